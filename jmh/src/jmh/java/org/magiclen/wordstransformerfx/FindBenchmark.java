@@ -0,0 +1,151 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of finding tuples. Every benchmark cycles through random left strings, so that the cached matches of the last query are not reused. With the gc profiler, the allocation per operation shows that comparing folded strings allocates nothing.
+ *
+ * @author Magic Len
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FindBenchmark {
+
+    // -----Class Constant-----
+    private static final int QUERIES = 1024;
+
+    // -----Object Variable-----
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    private SyntheticData dictionary;
+    private Data data;
+    /**
+     * Left strings in another case, which are found by the strict pass.
+     */
+    private String[] strictQueries;
+    /**
+     * Parts of left strings, which are found by the contains pass.
+     */
+    private String[] containsQueries;
+    /**
+     * Newest right strings, which are found by the reverse index.
+     */
+    private String[] rightQueries;
+    private int[] indices;
+    private int query;
+    private int found = -1;
+
+    // -----Object Method-----
+    @Setup(Level.Trial)
+    public void createDictionary() throws IOException {
+        dictionary = SyntheticData.create(size);
+        data = new Data(dictionary.file.getAbsolutePath());
+        data.readData();
+        final String[] lefts = dictionary.pickLefts(QUERIES, size);
+        strictQueries = new String[QUERIES];
+        containsQueries = new String[QUERIES];
+        rightQueries = new String[QUERIES];
+        indices = new int[QUERIES];
+        for (int i = 0; i < QUERIES; ++i) {
+            final String left = lefts[i];
+            strictQueries[i] = left.toLowerCase(Locale.ROOT);
+            containsQueries[i] = left.substring(1, Math.min(left.length(), 5));
+            indices[i] = data.indexOf(left);
+            rightQueries[i] = data.getRight(indices[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDictionary() {
+        dictionary.delete();
+    }
+
+    private int nextQuery() {
+        return query = (query + 1) & (QUERIES - 1);
+    }
+
+    /**
+     * Find a left string ignoring case.
+     *
+     * @return the index
+     */
+    @Benchmark
+    public int findStrict() {
+        return data.find(strictQueries[nextQuery()]);
+    }
+
+    /**
+     * Find a part of a left string.
+     *
+     * @return the index
+     */
+    @Benchmark
+    public int findContains() {
+        return data.find(containsQueries[nextQuery()]);
+    }
+
+    /**
+     * Find the next tuple containing a part of a left string, like clicking the next button repeatedly. A new query is started after nothing more is found.
+     *
+     * @return the index
+     */
+    @Benchmark
+    public int findNext() {
+        if (found < 0) {
+            nextQuery();
+        }
+        found = data.findNext(containsQueries[query], found);
+        return found;
+    }
+
+    /**
+     * Find the left strings of a newest right string, which should take the same time for any size.
+     *
+     * @return the tuples
+     */
+    @Benchmark
+    public List<DataView.Hit> lookupRight() {
+        return data.lookupRight(rightQueries[nextQuery()]);
+    }
+
+    /**
+     * Get a right string by its index.
+     *
+     * @return the right string
+     */
+    @Benchmark
+    public String getRight() {
+        return data.getRight(indices[nextQuery()]);
+    }
+}
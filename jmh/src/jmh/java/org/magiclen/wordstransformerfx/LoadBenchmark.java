@@ -0,0 +1,130 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of reading and writing a whole dictionary.
+ *
+ * @author Magic Len
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoadBenchmark {
+
+    // -----Object Variable-----
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    private SyntheticData dictionary;
+    private Data data;
+
+    // -----Object Method-----
+    @Setup(Level.Trial)
+    public void createDictionary() throws IOException {
+        dictionary = SyntheticData.create(size);
+        data = new Data(dictionary.file.getAbsolutePath());
+        data.readData();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDictionary() {
+        dictionary.delete();
+    }
+
+    /**
+     * Read the dictionary from its binary snapshot, as it is usually read after the first time.
+     *
+     * @return the loaded data
+     */
+    @Benchmark
+    public Data readData() {
+        final Data loaded = new Data(dictionary.file.getAbsolutePath());
+        final List<DataException> problems = loaded.readData();
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException(problems.get(0));
+        }
+        return loaded;
+    }
+
+    /**
+     * Write the dictionary as text with its binary snapshot.
+     *
+     * @return the data
+     * @throws DataException if the dictionary cannot be written
+     */
+    @Benchmark
+    public Data writeData() throws DataException {
+        data.writeData();
+        return data;
+    }
+
+    /**
+     * Parse the dictionary as text, as it is read for the first time or after it is edited by another program.
+     */
+    @State(Scope.Benchmark)
+    public static class Text {
+
+        // -----Object Variable-----
+        @Param({"1000", "100000", "1000000"})
+        public int size;
+        private SyntheticData dictionary;
+
+        // -----Object Method-----
+        @Setup(Level.Trial)
+        public void createDictionary() throws IOException {
+            dictionary = SyntheticData.create(size);
+        }
+
+        @Setup(Level.Invocation)
+        public void deleteSnapshot() {
+            BinarySnapshot.delete(dictionary.file);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteDictionary() {
+            dictionary.delete();
+        }
+    }
+
+    /**
+     * Read the dictionary from text. The binary snapshot which is written after parsing is included.
+     *
+     * @param text input the dictionary without its binary snapshot
+     * @return the loaded data
+     */
+    @Benchmark
+    public Data readText(final Text text) {
+        final Data loaded = new Data(text.dictionary.file.getAbsolutePath());
+        loaded.readData();
+        return loaded;
+    }
+}
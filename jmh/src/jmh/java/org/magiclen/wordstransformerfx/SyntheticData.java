@@ -0,0 +1,159 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic dictionaries for benchmarks. Like the shipped WordsData, their left strings are Latin names in mixed case and their right strings are CJK words.
+ *
+ * @author Magic Len
+ */
+final class SyntheticData {
+
+    // -----Class Constant-----
+    private static final String[] SYLLABLES = {"a", "ae", "ben", "dan", "el", "en", "for", "gar", "hel", "ith", "kor", "lan", "mor", "nar", "or", "quel", "ras", "sil", "thar", "un", "vor", "wood", "wyn", "zen"};
+    private static final int SEED = 20151001;
+
+    // -----Class Method-----
+    /**
+     * Create a dictionary file in a new temporary directory.
+     *
+     * @param size input the number of tuples
+     * @return the dictionary
+     * @throws IOException if the file cannot be written
+     */
+    static SyntheticData create(final int size) throws IOException {
+        final Random random = new Random(SEED);
+        final ArrayList<String> lefts = new ArrayList<>(size);
+        final HashSet<String> folded = new HashSet<>(size * 2);
+        while (lefts.size() < size) {
+            final String left = randomLeft(random);
+            if (folded.add(Entry.fold(left))) {
+                lefts.add(left);
+            }
+        }
+        final File directory = Files.createTempDirectory("WordsBenchmark").toFile();
+        final File file = new File(directory, Data.DEFAULT_FILE_NAME);
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf8"))) {
+            for (final String left : lefts) {
+                bw.write(left);
+                bw.write(" = ");
+                bw.write(randomRight(random));
+                bw.write('\n');
+            }
+        }
+        return new SyntheticData(file, lefts);
+    }
+
+    private static String randomWord(final Random random) {
+        final StringBuilder sb = new StringBuilder();
+        final int syllables = 1 + random.nextInt(4);
+        for (int i = 0; i < syllables; ++i) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private static String randomLeft(final Random random) {
+        final String word = randomWord(random);
+        switch (random.nextInt(4)) {
+            case 0:
+                return word.concat(" ").concat(randomWord(random));
+            case 1:
+                return word.concat(String.valueOf(random.nextInt(100)));
+            default:
+                return word;
+        }
+    }
+
+    private static String randomRight(final Random random) {
+        final int length = 2 + random.nextInt(5);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            // CJK Unified Ideographs
+            sb.append((char) (0x4E00 + random.nextInt(0x9FA5 - 0x4E00 + 1)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Delete a file or a directory with its files.
+     *
+     * @param file input the file or the directory
+     */
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    // -----Object Constant-----
+    /**
+     * The dictionary file.
+     */
+    final File file;
+    /**
+     * The left strings in the file.
+     */
+    final List<String> lefts;
+
+    // -----Constructor-----
+    private SyntheticData(final File file, final List<String> lefts) {
+        this.file = file;
+        this.lefts = lefts;
+    }
+
+    // -----Object Method-----
+    /**
+     * Pick some left strings randomly, so that benchmarks can cycle through them.
+     *
+     * @param count input the number of left strings, which must be a power of two
+     * @param seed input the seed of picking
+     * @return the left strings
+     */
+    String[] pickLefts(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final String[] picked = new String[count];
+        for (int i = 0; i < count; ++i) {
+            picked[i] = lefts.get(random.nextInt(lefts.size()));
+        }
+        return picked;
+    }
+
+    /**
+     * Delete the dictionary file with its journal and snapshot.
+     */
+    void delete() {
+        delete(file.getParentFile());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+/**
+ * Benchmarks of searching while typing. Every operation types one more character of a left string and searches it, as the keyword field does after typing pauses. The sample mode reports the percentiles of the latency. The target is p99 under 5 ms on up to 100,000 tuples and under 25 ms on 1,000,000 tuples, and a trial of searching fails if its measured p99 misses the target.
+ *
+ * @author Magic Len
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypingBenchmark {
+
+    // -----Class Constant-----
+    private static final int WORDS = 1024;
+
+    // -----Class Method-----
+    /**
+     * Get the target of the p99 latency of searching.
+     *
+     * @param size input the number of tuples
+     * @return nanoseconds
+     */
+    private static long targetNanos(final int size) {
+        return size > 100000 ? 25000000L : 5000000L;
+    }
+
+    // -----Object Variable-----
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    private SyntheticData dictionary;
+    private Data data;
+    private String[] words;
+    private int word;
+    private int typed;
+    /**
+     * The latencies of searching in the measurement iterations.
+     */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private boolean measuring;
+
+    // -----Object Method-----
+    @Setup(Level.Trial)
+    public void createDictionary() throws IOException {
+        dictionary = SyntheticData.create(size);
+        data = new Data(dictionary.file.getAbsolutePath());
+        data.readData();
+        words = dictionary.pickLefts(WORDS, size);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration(final IterationParams params) {
+        measuring = params.getType() == IterationType.MEASUREMENT;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDictionary() {
+        dictionary.delete();
+        final long p99 = latencies.percentile(99);
+        if (p99 > targetNanos(size)) {
+            throw new IllegalStateException(String.format("The p99 of searching is %.1f ms on %d tuples, which misses the target of %d ms.", p99 / 1e6, size, targetNanos(size) / 1000000L));
+        }
+    }
+
+    private String type() {
+        final String current = words[word];
+        if (typed >= current.length()) {
+            word = (word + 1) & (WORDS - 1);
+            typed = 0;
+        }
+        return words[word].substring(0, ++typed);
+    }
+
+    /**
+     * Search and rank all tuples containing the typed keyword.
+     *
+     * @return the number of tuples found
+     */
+    @Benchmark
+    public int search() {
+        final String typedWord = type();
+        final long start = System.nanoTime();
+        final int total = data.search(typedWord).getTotal();
+        if (measuring) {
+            latencies.record(System.nanoTime() - start);
+        }
+        return total;
+    }
+
+    /**
+     * Complete the typed keyword with left strings starting with it.
+     *
+     * @return the number of completions
+     */
+    @Benchmark
+    public int complete() {
+        return data.getView().complete(type(), 10).size();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The binary snapshot of a database file. It stores the sorted entries with their folded strings, so that the database can be loaded without parsing, merging, sorting or folding. The snapshot is only used when the size and the CRC-32 of the database file are the same as the recorded ones, so that an edit which keeps the size and the last modified time is still noticed.
+ *
+ * @author Magic Len
+ */
+final class BinarySnapshot {
+
+    // -----Class Constant-----
+    /**
+     * The extension of snapshot files.
+     */
+    static final String EXTENSION = ".bin";
+    /**
+     * The magic number of snapshot files.
+     */
+    private static final int MAGIC = 0x57544658;
+    /**
+     * The version of the snapshot format.
+     */
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * The number of bytes of the smallest entry, which has three empty strings and no right string.
+     */
+    private static final int MIN_ENTRY_SIZE = 16;
+
+    // -----Class Method-----
+    private static File snapshotFile(final File dataFile) {
+        return new File(dataFile.getPath().concat(EXTENSION));
+    }
+
+    /**
+     * Compute the CRC-32 of a file.
+     *
+     * @param file input the file
+     * @return the CRC-32
+     * @throws IOException if the file cannot be read
+     */
+    private static long checksum(final File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[65536];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int c;
+            while ((c = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, c);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Read the snapshot of a database file.
+     *
+     * @param dataFile input the database file
+     * @return the sorted entries, or null if the snapshot does not exist, is out of date or is broken
+     */
+    static List<Entry> read(final File dataFile) {
+        final File file = snapshotFile(dataFile);
+        if (!file.isFile()) {
+            return null;
+        }
+        // Nothing read from the snapshot is trusted before the checksum at its end is verified, so every count and length is bounded by its size.
+        final long snapshotSize = file.length();
+        final CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 65536), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (in.readLong() != dataFile.length() || in.readLong() != checksum(dataFile)) {
+                return null;
+            }
+            final int count = readCount(in, snapshotSize / MIN_ENTRY_SIZE);
+            final ArrayList<Entry> entries = new ArrayList<>(count);
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; ++i) {
+                final String left = readString(in, scratch, snapshotSize);
+                final String folded = readString(in, scratch, snapshotSize);
+                final String foldedRight = readString(in, scratch, snapshotSize);
+                final String[] revisions = new String[readCount(in, snapshotSize / 4)];
+                for (int j = 0; j < revisions.length; ++j) {
+                    revisions[j] = readString(in, scratch, snapshotSize);
+                }
+                entries.add(new Entry(left, folded, revisions, foldedRight));
+            }
+            final long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                return null;
+            }
+            return entries;
+        } catch (final IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read a count, which must not be negative or more than a limit.
+     *
+     * @param in input the stream
+     * @param limit input the maximum count
+     * @return the count
+     * @throws IOException if the count cannot be read or is out of range
+     */
+    private static int readCount(final DataInputStream in, final long limit) throws IOException {
+        final int count = in.readInt();
+        if (count < 0 || count > limit) {
+            throw new IOException("Broken count: ".concat(String.valueOf(count)));
+        }
+        return count;
+    }
+
+    private static String readString(final DataInputStream in, final byte[] scratch, final long snapshotSize) throws IOException {
+        final int length = readCount(in, snapshotSize);
+        final byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the snapshot of a database file. It should be called right after the database file is written.
+     *
+     * @param dataFile input the database file
+     * @param entries input the sorted entries which were written into the database file
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(final File dataFile, final List<Entry> entries) throws IOException {
+        final File file = snapshotFile(dataFile);
+        final File tmpFile = new File(file.getPath().concat(".tmp"));
+        final CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(dataFile.length());
+            out.writeLong(checksum(dataFile));
+            out.writeInt(entries.size());
+            for (final Entry entry : entries) {
+                writeString(out, entry.left());
+                writeString(out, entry.folded);
+                writeString(out, entry.foldedRight);
+                final int revisionCount = entry.revisionCount();
+                out.writeInt(revisionCount);
+                for (int i = 0; i < revisionCount; ++i) {
+                    writeString(out, entry.revision(i));
+                }
+            }
+            out.writeLong(crc.getValue());
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Remove the snapshot of a database file.
+     *
+     * @param dataFile input the database file
+     */
+    static void delete(final File dataFile) {
+        snapshotFile(dataFile).delete();
+    }
+
+    // -----Constructor-----
+    /**
+     * Private constructor. It cannot be instantiated.
+     */
+    private BinarySnapshot() {
+
+    }
+}
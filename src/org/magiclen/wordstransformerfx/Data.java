@@ -0,0 +1,1988 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The data for Words Transformer FX. It does not depend on JavaFX, so it can be used without any display. Problems are reported by {@link DataException} instead of dialogs.
+ *
+ * @author Magic Len
+ */
+public final class Data {
+
+    // -----Class Constant-----
+    /**
+     * The name of the default database file.
+     */
+    public static final String DEFAULT_FILE_NAME = "WordsData";
+    /**
+     * The system property which makes data not index the older right strings by default, e.g. "-Dwordstransformer.indexHistory=false".
+     */
+    public static final String INDEX_HISTORY_PROPERTY = "wordstransformer.indexHistory";
+    /**
+     * The system property which makes data store the strings compactly by default, e.g. "-Dwordstransformer.compactStrings=true".
+     */
+    public static final String COMPACT_STRINGS_PROPERTY = "wordstransformer.compactStrings";
+
+    // -----Class Method-----
+    /**
+     * Get the path of the default database file, which is in the directory where the program file is.
+     *
+     * @return the absolute path
+     */
+    public static String getDefaultDataPath() {
+        try {
+            final String path = Data.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+            final File file = new File(URLDecoder.decode(path, "UTF-8")).getAbsoluteFile();
+            if (!file.exists()) {
+                throw new Exception();
+            }
+            final File parent = file.getParentFile();
+            if (parent == null) {
+                throw new Exception();
+            }
+            return new File(parent, DEFAULT_FILE_NAME).getAbsolutePath();
+        } catch (final Exception ex) {
+            return new File(DEFAULT_FILE_NAME).getAbsolutePath();
+        }
+    }
+
+    // -----Object Constant-----
+    /**
+     * Data absolute path.
+     */
+    private final String dataPath;
+    /**
+     * All entries, always sorted by their folded left strings.
+     */
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    /**
+     * The journal of changes which are not written into the data file yet.
+     */
+    private final Journal journal;
+    /**
+     * The number of changes in the journal which makes the journal compacted in the background.
+     */
+    private final int COMPACT_THRESHOLD = 1000;
+    /**
+     * The substring index of folded left strings.
+     */
+    private final SubstringIndex leftIndex = new SubstringIndex(entry -> entry.folded);
+    /**
+     * The reverse index of the newest folded right strings.
+     */
+    private final ValueIndex rightIndex = new ValueIndex(false);
+    /**
+     * The reverse index of the older folded right strings, or null if they are not indexed, and then they are never matched.
+     */
+    private final ValueIndex historyIndex;
+    /**
+     * The arena where the left strings and the right strings are stored, or null if they are stored as strings.
+     */
+    private final Utf8Arena arena;
+    /**
+     * The last matches of left strings.
+     */
+    private final Matches leftMatches = new Matches();
+    /**
+     * The last matches of right strings.
+     */
+    private final Matches rightMatches = new Matches();
+    /**
+     * The last matches of older right strings.
+     */
+    private final Matches historyMatches = new Matches();
+    /**
+     * The last similar left strings, ranked by their edit distances.
+     */
+    private final Matches similarMatches = new Matches();
+    /**
+     * The minimum length of a string to find similar left strings.
+     */
+    private final int MIN_SIMILAR_LENGTH = 3;
+    /**
+     * The maximum number of similar left strings.
+     */
+    private final int MAX_SIMILAR = 50;
+    /**
+     * The maximum number of candidates to match a string shorter than {@link SubstringIndex#SELECTIVE_QUERY_LENGTH} on a side. Such a string can be contained in a large part of the entries, so if it has more candidates, it only matches the left strings which start with it and the right strings which are equal to it. A CJK bigram usually has a few candidates, so it is matched as usual.
+     */
+    private final int SHORT_QUERY_LIMIT = 10000;
+    /**
+     * The number of entries checked between two checks of interruption when matching.
+     */
+    private final int INTERRUPT_CHECK_INTERVAL = 4096;
+    /**
+     * The metrics of operations.
+     */
+    private final DataMetrics metrics = new DataMetrics(this);
+
+    // -----Object Variable-----
+    /**
+     * Whether left data were found.
+     */
+    private boolean findLeft;
+    /**
+     * Whether the found left data are only similar to the string.
+     */
+    private boolean findSimilar;
+    /**
+     * Whether the found right data are only in the older right strings.
+     */
+    private boolean findHistory;
+    /**
+     * The immutable version of the entries, which is published after every change. Methods which only read a version, such as {@link #count()} and {@link #getLeft(int)}, can be called by any thread. The other methods must be called by one thread at a time.
+     */
+    private volatile DataView view = DataView.EMPTY;
+    /**
+     * Whether all data were loaded. Data cannot be compacted before that.
+     */
+    private boolean loaded;
+    /**
+     * The number of modifications of the entries. It is used to know whether the last matches are out of date.
+     */
+    private int modCount;
+    /**
+     * The number of lines read by the last loading.
+     */
+    private int loadEntries;
+    /**
+     * The time (in nanoseconds) spent by the last loading.
+     */
+    private long loadNanos;
+    /**
+     * The estimated heap size of an entry with its index postings, in bytes.
+     */
+    private volatile long entryBytes;
+    /**
+     * The last modified time of the data file when it was read or written by this instance.
+     */
+    private volatile long fileModified;
+    /**
+     * The length of the data file when it was read or written by this instance.
+     */
+    private volatile long fileLength;
+
+    // -----Constructor-----
+    /**
+     * Construct data instance. The older right strings are indexed unless the system property {@value #INDEX_HISTORY_PROPERTY} is false, and the strings are stored compactly if the system property {@value #COMPACT_STRINGS_PROPERTY} is true.
+     *
+     * @param dataFilePath input the absolute data file path
+     */
+    public Data(final String dataFilePath) {
+        this(dataFilePath, !"false".equalsIgnoreCase(System.getProperty(INDEX_HISTORY_PROPERTY)));
+    }
+
+    /**
+     * Construct data instance. The strings are stored compactly if the system property {@value #COMPACT_STRINGS_PROPERTY} is true.
+     *
+     * @param dataFilePath input the absolute data file path
+     * @param indexHistory input true to index the older right strings, so that they can be found and are reported as older ones, or false to match only the newest right strings
+     */
+    public Data(final String dataFilePath, final boolean indexHistory) {
+        this(dataFilePath, indexHistory, Boolean.getBoolean(COMPACT_STRINGS_PROPERTY));
+    }
+
+    /**
+     * Construct data instance.
+     *
+     * @param dataFilePath input the absolute data file path
+     * @param indexHistory input true to index the older right strings, so that they can be found and are reported as older ones, or false to match only the newest right strings
+     * @param compactStrings input true to store the left strings and the right strings as UTF-8 bytes in an arena, which saves memory but decodes them whenever they are used
+     */
+    public Data(final String dataFilePath, final boolean indexHistory, final boolean compactStrings) {
+        dataPath = dataFilePath;
+        historyIndex = indexHistory ? new ValueIndex(true) : null;
+        arena = compactStrings ? new Utf8Arena() : null;
+        journal = new Journal(dataFilePath);
+    }
+
+    public boolean findLeft() {
+        return findLeft;
+    }
+
+    /**
+     * Whether the found left data are only similar to the string, because no data contain the string.
+     *
+     * @return true if the found left data are similar
+     */
+    public boolean findSimilar() {
+        return findSimilar;
+    }
+
+    /**
+     * Whether the found right data only have the string in their older right strings, not in their newest ones.
+     *
+     * @return true if the found right data are found by their history
+     */
+    public boolean findHistory() {
+        return findHistory;
+    }
+
+    /**
+     * Get the entry which is stored in the entries, which is compact if the strings are stored compactly.
+     *
+     * @param entry input the entry
+     * @return the entry to store
+     */
+    private Entry stored(final Entry entry) {
+        return arena == null ? entry : entry.compact(arena);
+    }
+
+    /**
+     * Add an entry to the indices.
+     *
+     * @param entry input the entry
+     */
+    private void index(final Entry entry) {
+        leftIndex.add(entry);
+        rightIndex.add(entry);
+        if (historyIndex != null) {
+            historyIndex.add(entry);
+        }
+    }
+
+    /**
+     * Remove an entry from the indices.
+     *
+     * @param entry input the entry
+     */
+    private void unindex(final Entry entry) {
+        leftIndex.remove(entry);
+        rightIndex.remove(entry);
+        if (historyIndex != null) {
+            historyIndex.remove(entry);
+        }
+    }
+
+    /**
+     * Build the substring indices from all entries, so that the entries changed after the last building no longer cost extra memory.
+     */
+    private void buildIndices() {
+        leftIndex.build(entries);
+        rightIndex.build(entries);
+        if (historyIndex != null) {
+            historyIndex.build(entries);
+        }
+    }
+
+    /**
+     * Whether the substring indices are built. They are not built while loading, or after too many entries are changed.
+     *
+     * @return true if they are built
+     */
+    private boolean indicesBuilt() {
+        return leftIndex.isBuilt() && rightIndex.isBuilt() && (historyIndex == null || historyIndex.isBuilt());
+    }
+
+    /**
+     * Get the number of lines read by the last loading.
+     *
+     * @return the number of lines
+     */
+    public int getLoadEntries() {
+        return loadEntries;
+    }
+
+    /**
+     * Get the time spent by the last loading.
+     *
+     * @return milliseconds
+     */
+    public long getLoadMillis() {
+        return loadNanos / 1000000L;
+    }
+
+    /**
+     * Get the loading speed of the last loading.
+     *
+     * @return entries per second
+     */
+    public long getLoadRate() {
+        if (loadNanos <= 0) {
+            return 0;
+        }
+        return loadEntries * 1000000000L / loadNanos;
+    }
+
+    /**
+     * Whether all data were loaded.
+     *
+     * @return true if loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Get the path of the data file.
+     *
+     * @return the absolute path
+     */
+    public String getPath() {
+        return dataPath;
+    }
+
+    /**
+     * Whether the older right strings are indexed, so that they can be found.
+     *
+     * @return true if they are indexed
+     */
+    public boolean isHistoryIndexed() {
+        return historyIndex != null;
+    }
+
+    /**
+     * Whether the left strings and the right strings are stored compactly as UTF-8 bytes.
+     *
+     * @return true if they are stored compactly
+     */
+    public boolean isCompactStrings() {
+        return arena != null;
+    }
+
+    /**
+     * Get the metrics of operations, such as the latencies of searching. They can be read by any thread.
+     *
+     * @return the metrics
+     */
+    public DataMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the number of changes which are not written into the data file yet.
+     *
+     * @return the number of changes in the journal
+     */
+    public int getJournalSize() {
+        return journal.size();
+    }
+
+    /**
+     * Estimate the heap size used by the entries and their indices. It is measured when the data are loaded.
+     *
+     * @return bytes
+     */
+    public long getHeapEstimate() {
+        return entryBytes * count();
+    }
+
+    /**
+     * Measure the average heap size of an entry by sampling the entries.
+     */
+    private void measureEntryBytes() {
+        final int size = entries.size();
+        if (size == 0) {
+            entryBytes = 0;
+            return;
+        }
+        final int step = Math.max(1, size / 1024);
+        long bytes = 0;
+        int samples = 0;
+        for (int i = 0; i < size; i += step) {
+            final Entry entry = entries.get(i);
+            // An entry, its strings and its references in the entry lists.
+            long b = entry.heapBytes() + 8 * 3;
+            // About two grams per character, and an ordinal per posting.
+            b += (entry.folded.length() + (historyIndex != null ? entry.foldedRight.length() : entry.foldedCurrentLength())) * 2 * 4;
+            // A hash map node and an array per right string in the reverse indices.
+            b += (historyIndex != null ? entry.revisionCount() : 1) * (48 + 24);
+            bytes += b;
+            ++samples;
+        }
+        entryBytes = bytes / samples;
+    }
+
+    /**
+     * Find the index of a left string which is equal to the input string ignoring case.
+     *
+     * @param leftString input a left string
+     * @return the index, or (-(insertion point) - 1) if not found
+     */
+    private int indexOfLeft(final String leftString) {
+        return indexOfFolded(Entry.fold(leftString));
+    }
+
+    /**
+     * Find the index of a folded left string.
+     *
+     * @param folded input a folded left string
+     * @return the index, or (-(insertion point) - 1) if not found
+     */
+    private int indexOfFolded(final String folded) {
+        return indexOfFolded(entries, folded);
+    }
+
+    /**
+     * Find the index of a folded left string in sorted entries.
+     *
+     * @param sorted input the entries sorted by their folded left strings
+     * @param folded input a folded left string
+     * @return the index, or (-(insertion point) - 1) if not found
+     */
+    private static int indexOfFolded(final List<Entry> sorted, final String folded) {
+        int low = 0;
+        int high = sorted.size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int c = sorted.get(middle).folded.compareTo(folded);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public int count() {
+        return view.count();
+    }
+
+    /**
+     * Get the version of data, which is changed after every change.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return view.getVersion();
+    }
+
+    /**
+     * Find the index of a left string which is equal to the input string ignoring case.
+     *
+     * @param leftString input a left string
+     * @return the index, or -1 if not found
+     */
+    public int indexOf(final String leftString) {
+        return view.indexOf(leftString);
+    }
+
+    public String getAllRight(final int index) {
+        return view.getAllRight(index);
+    }
+
+    public String getRight(final int index) {
+        return view.getRight(index);
+    }
+
+    public String getLeft(final int index) {
+        return view.getLeft(index);
+    }
+
+    public String get(final int index) {
+        if (findLeft) {
+            return getRight(index);
+        } else {
+            return getLeft(index);
+        }
+    }
+
+    public int find(final String str) {
+        return findNext(str, -1);
+    }
+
+    public int findNext(final String str, final int index) {
+        final DataEvent event = metrics.start(DataMetrics.Operation.SEARCH);
+        try {
+            return doFindNext(str, index);
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    private int doFindNext(final String str, final int index) {
+        // Fold the string only once. All passes below compare it with the folded strings of entries.
+        final String folded = Entry.fold(str);
+        int targetIndex;
+
+        //find left
+        findLeft = true;
+        findSimilar = false;
+        findHistory = false;
+        if (index == -1) {
+            targetIndex = indexOfFolded(folded);
+            if (targetIndex >= 0) {
+                return targetIndex;
+            }
+        }
+        targetIndex = find(Side.LEFT, folded, index);
+        if (targetIndex != -1) {
+            return targetIndex;
+        }
+
+        //find right
+        findLeft = false;
+        if (index == -1) {
+            final int[] equal = equal(rightIndex, folded);
+            if (equal.length > 0) {
+                return equal[0];
+            }
+        }
+        targetIndex = find(Side.RIGHT, folded, index);
+        if (targetIndex != -1) {
+            return targetIndex;
+        }
+
+        //find older right
+        if (historyIndex != null) {
+            findHistory = true;
+            targetIndex = find(Side.HISTORY, folded, index);
+            if (targetIndex != -1) {
+                return targetIndex;
+            }
+            findHistory = false;
+        }
+
+        //find similar left
+        final int[] similar = similar(folded);
+        if (similar.length == 0) {
+            return -1;
+        }
+        findLeft = true;
+        findSimilar = true;
+        // Iterate the ranked left strings from the one after the index, and wrap around.
+        for (int i = 0; i < similar.length; ++i) {
+            if (similar[i] == index) {
+                return similar[(i + 1) % similar.length];
+            }
+        }
+        return similar[0];
+    }
+
+    /**
+     * Find the tuples whose right strings are equal to a string ignoring case, which is the reverse of finding a left string. They are found by hashing, so it takes the same time for any number of tuples.
+     *
+     * @param rightString input the right string
+     * @return the tuples whose newest right strings are equal to the string, and then the tuples whose older right strings are equal to it if they are indexed, each in the order of their left strings
+     */
+    public List<DataView.Hit> lookupRight(final String rightString) {
+        final DataEvent event = metrics.start(DataMetrics.Operation.SEARCH);
+        try {
+            final String folded = Entry.fold(rightString);
+            final Entry[] current = rightIndex.equal(folded).clone();
+            Arrays.sort(current, Entry.ORDER);
+            final ArrayList<DataView.Hit> hits = new ArrayList<>(current.length);
+            for (final Entry entry : current) {
+                hits.add(new DataView.Hit(entry, false, false));
+            }
+            if (historyIndex != null) {
+                final Entry[] older = historyIndex.equal(folded).clone();
+                Arrays.sort(older, Entry.ORDER);
+                final HashSet<Entry> found = new HashSet<>(Arrays.asList(current));
+                for (final Entry entry : older) {
+                    // A right string which was used again is the newest one.
+                    if (!found.contains(entry)) {
+                        hits.add(new DataView.Hit(entry, false, true));
+                    }
+                }
+            }
+            return hits;
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    /**
+     * Search tuples and rank them. Unlike {@link #findNext(String, int)}, all matched tuples are found at once and counted, and the result can be paged by any thread.
+     *
+     * @param str input the string to search
+     * @return the ranked result
+     */
+    public SearchResult search(final String str) {
+        final DataEvent event = metrics.start(DataMetrics.Operation.SEARCH);
+        try {
+            return doSearch(str);
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    private SearchResult doSearch(final String str) {
+        final String folded = Entry.fold(str);
+        if (folded.isEmpty()) {
+            return SearchResult.EMPTY;
+        }
+        publish();
+        final int[] left = matches(Side.LEFT, folded);
+        final int[] right = matches(Side.RIGHT, folded);
+        final int[] history = historyIndex != null ? matches(Side.HISTORY, folded) : new int[0];
+        // The left strings which start with the string are in a range, because the entries are sorted.
+        final int exact = indexOfFolded(folded);
+        final int prefixStart = exact >= 0 ? exact : -(exact + 1);
+        final int prefixEnd = prefixStart < entries.size() && entries.get(prefixStart).folded.startsWith(folded) ? skipPrefix(folded, folded.length(), prefixStart) : prefixStart;
+        final int[] positions = new int[left.length + right.length + history.length];
+        final int[] rankEnds = new int[SearchResult.Rank.values().length];
+        int count = 0;
+        if (exact >= 0) {
+            positions[count++] = exact;
+        }
+        rankEnds[SearchResult.Rank.EXACT.ordinal()] = count;
+        for (int i = prefixStart; i < prefixEnd; ++i) {
+            if (i != exact) {
+                positions[count++] = i;
+            }
+        }
+        rankEnds[SearchResult.Rank.PREFIX.ordinal()] = count;
+        for (final int position : left) {
+            if (position < prefixStart || position >= prefixEnd) {
+                positions[count++] = position;
+            }
+        }
+        rankEnds[SearchResult.Rank.LEFT.ordinal()] = count;
+        // Both are sorted, so the right matches which are not left matches are found by merging them.
+        int j = 0;
+        for (final int position : right) {
+            while (j < left.length && left[j] < position) {
+                ++j;
+            }
+            if (j == left.length || left[j] != position) {
+                positions[count++] = position;
+            }
+        }
+        rankEnds[SearchResult.Rank.RIGHT.ordinal()] = count;
+        // The older right matches which are neither left matches nor right matches are found by merging, too.
+        j = 0;
+        int k = 0;
+        for (final int position : history) {
+            while (j < left.length && left[j] < position) {
+                ++j;
+            }
+            while (k < right.length && right[k] < position) {
+                ++k;
+            }
+            if ((j == left.length || left[j] != position) && (k == right.length || right[k] != position)) {
+                positions[count++] = position;
+            }
+        }
+        rankEnds[SearchResult.Rank.HISTORY.ordinal()] = count;
+        if (count == 0) {
+            final int[] similar = similar(folded);
+            rankEnds[SearchResult.Rank.SIMILAR.ordinal()] = similar.length;
+            return new SearchResult(view, similar, rankEnds);
+        }
+        rankEnds[SearchResult.Rank.SIMILAR.ordinal()] = count;
+        return new SearchResult(view, Arrays.copyOf(positions, count), rankEnds);
+    }
+
+    /**
+     * Get the indices of entries whose folded strings on a side contain a folded string by scanning all entries in order. It is used when the string is too short to use the substring index, or when the substring index is not built.
+     *
+     * @param side input the side to match
+     * @param folded input a folded string
+     * @return the sorted indices
+     */
+    private int[] scanAll(final Side side, final String folded) {
+        final int size = entries.size();
+        int[] positions = new int[16];
+        int count = 0;
+        for (int i = 0; i < size; ++i) {
+            checkInterrupted(i);
+            final Entry entry = entries.get(i);
+            if (side.contains(entry, folded)) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = i;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * Get the indices of entries whose folded left strings start with a folded string. They are in a range, because the entries are sorted.
+     *
+     * @param folded input a folded string
+     * @return the sorted indices
+     */
+    private int[] prefixes(final String folded) {
+        final int exact = indexOfFolded(folded);
+        final int start = exact >= 0 ? exact : -(exact + 1);
+        final int end = start < entries.size() && entries.get(start).folded.startsWith(folded) ? skipPrefix(folded, folded.length(), start) : start;
+        final int[] positions = new int[end - start];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = start + i;
+        }
+        return positions;
+    }
+
+    /**
+     * Stop matching if the current thread is interrupted, e.g. when a search is cancelled because a newer one supersedes it. Only one of {@link #INTERRUPT_CHECK_INTERVAL} calls checks it.
+     *
+     * @param i input the number of entries which have been checked
+     */
+    private void checkInterrupted(final int i) {
+        if (i % INTERRUPT_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Matching was interrupted.");
+        }
+    }
+
+    /**
+     * Get the indices of entries whose folded left strings are similar to a folded string, which means that their edit distances are small. A string is allowed to have one typo for every five characters, up to three typos.
+     * <p>
+     * The sorted folded left strings are walked as a trie. The rows of the Levenshtein distance are computed once for each common prefix, and when no row value of a prefix is within the distance, all strings with the prefix are skipped by binary searching. So only a small part of the entries are visited.
+     *
+     * @param folded input a folded string
+     * @return the indices, ranked by the edit distances and then by the left strings
+     */
+    private int[] similar(final String folded) {
+        final int length = folded.length();
+        if (length < MIN_SIMILAR_LENGTH) {
+            return new int[0];
+        }
+        if (similarMatches.modCount == modCount && folded.equals(similarMatches.query)) {
+            return similarMatches.positions;
+        }
+        final int maxDistance = Math.min(3, (length + 4) / 5);
+        // The distance in the high bits and the index in the low bits, so that sorting ranks them.
+        long[] ranked = new long[16];
+        int count = 0;
+        // rows[d] is the row of the prefix whose length is d, of the last visited string.
+        int[][] rows = new int[32][];
+        rows[0] = new int[length + 1];
+        for (int j = 0; j <= length; ++j) {
+            rows[0][j] = j;
+        }
+        String last = "";
+        int valid = 0;
+        final int size = entries.size();
+        int i = 0;
+        while (i < size) {
+            final String key = entries.get(i).folded;
+            final int keyLength = key.length();
+            int depth = 0;
+            final int limit = Math.min(valid, Math.min(keyLength, last.length()));
+            while (depth < limit && key.charAt(depth) == last.charAt(depth)) {
+                ++depth;
+            }
+            if (rows.length <= keyLength) {
+                rows = Arrays.copyOf(rows, keyLength * 2);
+            }
+            boolean pruned = false;
+            for (int d = depth + 1; d <= keyLength; ++d) {
+                final int[] previous = rows[d - 1];
+                int[] row = rows[d];
+                if (row == null) {
+                    row = new int[length + 1];
+                    rows[d] = row;
+                }
+                final char c = key.charAt(d - 1);
+                row[0] = d;
+                int min = d;
+                for (int j = 1; j <= length; ++j) {
+                    final int substitution = previous[j - 1] + (c == folded.charAt(j - 1) ? 0 : 1);
+                    final int value = Math.min(substitution, Math.min(previous[j], row[j - 1]) + 1);
+                    row[j] = value;
+                    if (value < min) {
+                        min = value;
+                    }
+                }
+                if (min > maxDistance) {
+                    // No string with this prefix can be similar. Skip them.
+                    last = key;
+                    valid = d - 1;
+                    i = skipPrefix(key, d, i + 1);
+                    pruned = true;
+                    break;
+                }
+            }
+            if (pruned) {
+                continue;
+            }
+            final int distance = rows[keyLength][length];
+            if (distance <= maxDistance) {
+                if (count == ranked.length) {
+                    ranked = Arrays.copyOf(ranked, count * 2);
+                }
+                ranked[count++] = ((long) distance << 32) | i;
+            }
+            last = key;
+            valid = keyLength;
+            ++i;
+        }
+        ranked = Arrays.copyOf(ranked, count);
+        Arrays.sort(ranked);
+        final int[] positions = new int[Math.min(count, MAX_SIMILAR)];
+        for (int k = 0; k < positions.length; ++k) {
+            positions[k] = (int) ranked[k];
+        }
+        similarMatches.query = folded;
+        similarMatches.modCount = modCount;
+        similarMatches.positions = positions;
+        return positions;
+    }
+
+    /**
+     * Find the first entry after a position whose folded left string doesn't start with a prefix. The entries with the prefix are usually few, so the range is found by galloping before binary searching.
+     *
+     * @param key input a folded left string which starts with the prefix
+     * @param prefixLength input the length of the prefix
+     * @param from input the position to start finding
+     * @return the index of the entry, or the size if there is no such entry
+     */
+    private int skipPrefix(final String key, final int prefixLength, final int from) {
+        final int size = entries.size();
+        // The entries before low have the prefix, and the entry at high doesn't have it.
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < size && entries.get(high).folded.regionMatches(0, key, 0, prefixLength)) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (entries.get(middle).folded.regionMatches(0, key, 0, prefixLength)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find a folded string.
+     *
+     * @param side input the side to find
+     * @param folded input a folded string
+     * @param index input the index where the finding starts after
+     * @return the index of an entry whose folded string on the side contains the string, or -1 if not found
+     */
+    private int find(final Side side, final String folded, final int index) {
+        final int size = entries.size();
+        final int point = index + 1;
+        if (point < 0 || point > size) {
+            return -1;
+        }
+        final int[] positions = matches(side, folded);
+        final int length = positions.length;
+        if (length == 0) {
+            return -1;
+        }
+        // Iterate the sorted matches from the first one at or after the point, and wrap around.
+        int start = Arrays.binarySearch(positions, point);
+        if (start < 0) {
+            start = -(start + 1);
+        }
+        return positions[start % length];
+    }
+
+    /**
+     * Get the sorted indices of entries which have a right string equal to a folded string in a reverse index. They are found by hashing, without comparing any other entries.
+     *
+     * @param index input the reverse index
+     * @param folded input a folded string
+     * @return the sorted indices
+     */
+    private int[] equal(final ValueIndex index, final String folded) {
+        final Entry[] found = index.equal(folded);
+        final int[] positions = new int[found.length];
+        for (int i = 0; i < found.length; ++i) {
+            positions[i] = indexOfFolded(found[i].folded);
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * Get the sorted indices of entries whose folded strings on a side contain a folded string. If the string extends the last query, which is the usual case when typing, only the last matches are checked. The matches are kept for the next query, whether they were found by the substring index or by scanning.
+     * <p>
+     * If the string is shorter than {@link SubstringIndex#SELECTIVE_QUERY_LENGTH} and it has more than {@link #SHORT_QUERY_LIMIT} candidates, or there are more entries than that when it cannot use the substring index, only the left strings which start with it and the right strings which are equal to it are matched, and they are not kept.
+     *
+     * @param side input the side to match
+     * @param folded input a folded string
+     * @return the sorted indices
+     * @throws CancellationException if the current thread is interrupted
+     */
+    private int[] matches(final Side side, final String folded) {
+        final Matches last;
+        switch (side) {
+            case LEFT:
+                last = leftMatches;
+                break;
+            case RIGHT:
+                last = rightMatches;
+                break;
+            default:
+                last = historyMatches;
+        }
+        final boolean refinable = last.modCount == modCount && last.query != null && folded.contains(last.query);
+        if (refinable && folded.length() == last.query.length()) {
+            return last.positions;
+        }
+        if (loaded && !indicesBuilt()) {
+            buildIndices();
+        }
+        final SubstringIndex.Candidates candidates;
+        switch (side) {
+            case LEFT:
+                candidates = leftIndex.candidates(folded);
+                break;
+            case RIGHT:
+                candidates = rightIndex.candidates(folded);
+                break;
+            default:
+                candidates = historyIndex.candidates(folded);
+        }
+        if (!refinable && folded.length() < SubstringIndex.SELECTIVE_QUERY_LENGTH && (candidates == null ? entries.size() : candidates.size()) > SHORT_QUERY_LIMIT) {
+            switch (side) {
+                case LEFT:
+                    return prefixes(folded);
+                case RIGHT:
+                    return equal(rightIndex, folded);
+                default:
+                    return equal(historyIndex, folded);
+            }
+        }
+        int[] positions;
+        int count = 0;
+        if (refinable && (candidates == null || last.positions.length <= candidates.size())) {
+            // Every entry containing the string also contains the last query. The last matches are sorted, so the refined ones are sorted, too.
+            positions = new int[last.positions.length];
+            for (int i = 0; i < last.positions.length; ++i) {
+                checkInterrupted(i);
+                final int position = last.positions[i];
+                if (side.contains(entries.get(position), folded)) {
+                    positions[count++] = position;
+                }
+            }
+            positions = Arrays.copyOf(positions, count);
+        } else if (candidates == null) {
+            positions = scanAll(side, folded);
+        } else {
+            positions = new int[candidates.size()];
+            // The candidates from the built index are in the order of the entries, so their positions are counted without comparing strings.
+            final boolean exact = candidates.isExact();
+            final int baseSize = candidates.baseSize();
+            for (int i = 0; i < baseSize; ++i) {
+                checkInterrupted(i);
+                final Entry entry = candidates.baseEntry(i);
+                if (entry != null && (exact || side.contains(entry, folded))) {
+                    positions[count++] = candidates.position(i);
+                }
+            }
+            final int sortedCount = count;
+            for (final Entry entry : candidates.added()) {
+                if (exact || side.contains(entry, folded)) {
+                    positions[count++] = indexOfFolded(entry.folded);
+                }
+            }
+            positions = Arrays.copyOf(positions, count);
+            if (count > sortedCount) {
+                Arrays.sort(positions);
+            }
+        }
+        last.query = folded;
+        last.modCount = modCount;
+        last.positions = positions;
+        return positions;
+    }
+
+    /**
+     * Get the immutable view of the entries. It can be called by any thread, and it never waits for changes.
+     *
+     * @return the view
+     */
+    public DataView getView() {
+        return view;
+    }
+
+    /**
+     * Publish a new view if the entries were modified after the last view was published.
+     */
+    private void publish() {
+        if (view.getVersion() != modCount) {
+            view = new DataView(entries.toArray(new Entry[entries.size()]), modCount, historyIndex != null);
+        }
+    }
+
+    /**
+     * Get the transformer of the current entries. It is rebuilt only if the entries were modified.
+     *
+     * @return the transformer
+     */
+    public Transformer getTransformer() {
+        return view.getTransformer();
+    }
+
+    /**
+     * Get the parallel transformer of the current entries. Its tasks run in the common fork-join pool.
+     *
+     * @return the parallel transformer
+     */
+    public ParallelTransformer getParallelTransformer() {
+        return new ParallelTransformer(getTransformer(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Transform a UTF-8 text file. Every left string in the text is replaced with its newest right string. A large file is transformed in parallel.
+     *
+     * @param input input the text file
+     * @param output input the file to write the transformed text, which must not be the input file
+     * @return the number of replacements
+     * @throws DataException if the file cannot be transformed, or the output file is the input file
+     */
+    public long transform(final File input, final File output) throws DataException {
+        try {
+            // The output file is truncated before the input file is read.
+            if (output.exists() && Files.isSameFile(input.toPath(), output.toPath())) {
+                throw new DataException("The transformed file cannot replace the original one!", "Path: ".concat(output.getAbsolutePath()));
+            }
+            return getParallelTransformer().transformFile(input.toPath(), output.toPath());
+        } catch (final IOException e) {
+            throw new DataException("Cannot transform the file!", "Path: ".concat(input.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Transform all UTF-8 text files in a directory, including its sub-directories, in parallel. The transformed files are written to the same relative paths in the output directory, which must not be the input directory or inside it.
+     *
+     * @param inputDirectory input the directory of text files
+     * @param outputDirectory input the directory to write the transformed files
+     * @return the number of replacements
+     * @throws DataException if a file cannot be transformed, or the output directory is in the input directory
+     */
+    public long transformDirectory(final File inputDirectory, final File outputDirectory) throws DataException {
+        try {
+            if (ParallelTransformer.isInside(outputDirectory.toPath(), inputDirectory.toPath())) {
+                throw new DataException("The output directory cannot be the input directory or inside it!", "Path: ".concat(outputDirectory.getAbsolutePath()));
+            }
+            return getParallelTransformer().transformDirectory(inputDirectory.toPath(), outputDirectory.toPath());
+        } catch (final IOException e) {
+            throw new DataException("Cannot transform the directory!", "Path: ".concat(inputDirectory.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Read all data at once. The data which can be read are still loaded even if there are problems.
+     *
+     * @return the problems found while reading, which is empty if there is no problem
+     */
+    public List<DataException> readData() {
+        final Loader loader = new Loader();
+        while (!loader.step(Integer.MAX_VALUE)) {
+            // Keep loading.
+        }
+        return loader.getProblems();
+    }
+
+    /**
+     * Create a loader to read data step by step.
+     *
+     * @return a new loader
+     */
+    public Loader newLoader() {
+        return new Loader();
+    }
+
+    /**
+     * Read tuples from the data file. Tuples with the same left string are combined into one entry.
+     *
+     * @param reader input the reader of the data file
+     * @param maxTuples input the maximum number of tuples to read
+     * @param tuples input the map where the entries are put by their folded left strings
+     * @return the number of tuples read, which is less than the maximum number only if the end of the file is reached
+     * @throws IOException if a tuple is broken
+     */
+    private static int readTuples(final DataFileReader reader, final int maxTuples, final HashMap<String, Entry> tuples) throws IOException {
+        int count = 0;
+        while (count < maxTuples && reader.next()) {
+            final Entry entry = new Entry(reader.left(), Entry.parseHistory(reader.right()));
+            final Entry same = tuples.putIfAbsent(entry.folded, entry);
+            if (same != null) {
+                tuples.put(entry.folded, same.revise(entry));
+            }
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Remember the state of the data file, so that the changes made by other programs can be detected.
+     */
+    private void stampFile() {
+        final File dataFile = new File(dataPath);
+        fileModified = dataFile.lastModified();
+        fileLength = dataFile.length();
+    }
+
+    /**
+     * Whether the data file was modified by another program, such as a text editor, after it was read or written by this instance.
+     *
+     * @return true if it was modified
+     */
+    public boolean isModifiedExternally() {
+        final File dataFile = new File(dataPath);
+        return dataFile.exists() && (dataFile.lastModified() != fileModified || dataFile.length() != fileLength);
+    }
+
+    /**
+     * Read the data file again if it was modified by another program. The changes in the journal are applied on the new data again, and only the entries which are different from the current ones are updated in the indices.
+     *
+     * @return true if the entries were changed
+     * @throws DataException if the data file cannot be read, and the current entries are kept
+     */
+    public boolean reloadIfModified() throws DataException {
+        if (!loaded || !isModifiedExternally()) {
+            return false;
+        }
+        final DataEvent event = metrics.start(DataMetrics.Operation.LOAD);
+        try {
+            return doReload();
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    private boolean doReload() throws DataException {
+        final File dataFile = new File(dataPath);
+        final long modified = dataFile.lastModified();
+        final long length = dataFile.length();
+        final HashMap<String, Entry> tuples = new HashMap<>();
+        final long generation;
+        try (DataFileReader reader = new DataFileReader(dataFile)) {
+            generation = reader.generation();
+            readTuples(reader, Integer.MAX_VALUE, tuples);
+        } catch (final IOException e) {
+            // The file may still be being written. It is read again when it is modified next time.
+            throw new DataException("Cannot not reload data correctly! The database has something wrong!", "Path: ".concat(dataPath), e);
+        }
+        final ArrayList<Entry> sorted = new ArrayList<>(tuples.values());
+        sorted.sort(Entry.ORDER);
+        if (dataFile.lastModified() == modified && dataFile.length() == length) {
+            try {
+                BinarySnapshot.write(dataFile, sorted);
+            } catch (final IOException e) {
+                // The snapshot is only a cache.
+            }
+        }
+        try {
+            journal.replay(generation, new Journal.Handler() {
+                @Override
+                public void add(final String left, final String right) {
+                    final Entry entry = new Entry(left, right);
+                    final int index = indexOfFolded(sorted, entry.folded);
+                    if (index < 0) {
+                        sorted.add(-(index + 1), entry);
+                    } else if (!sorted.get(index).current().equals(right)) {
+                        sorted.set(index, sorted.get(index).revise(right));
+                    }
+                }
+
+                @Override
+                public void delete(final String left) {
+                    final int index = indexOfFolded(sorted, Entry.fold(left));
+                    if (index >= 0) {
+                        sorted.remove(index);
+                    }
+                }
+            });
+        } catch (final IOException e) {
+            throw new DataException("Cannot not reload data correctly! The journal has something wrong!", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e);
+        }
+        fileModified = modified;
+        fileLength = length;
+        return replace(sorted);
+    }
+
+    /**
+     * Replace the entries with new sorted entries. The entries which are the same as the current ones are kept, so only the different ones are updated in the indices.
+     *
+     * @param sorted input the new entries sorted by their folded left strings
+     * @return true if the entries were changed
+     */
+    private boolean replace(final List<Entry> sorted) {
+        final int size = entries.size();
+        final int sortedSize = sorted.size();
+        final ArrayList<Entry> replaced = new ArrayList<>(sortedSize);
+        boolean changed = false;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < sortedSize) {
+            final int c;
+            if (i == size) {
+                c = 1;
+            } else if (j == sortedSize) {
+                c = -1;
+            } else {
+                c = Entry.ORDER.compare(entries.get(i), sorted.get(j));
+            }
+            if (c < 0) {
+                final Entry old = entries.get(i++);
+                unindex(old);
+                changed = true;
+            } else if (c > 0) {
+                final Entry entry = stored(sorted.get(j++));
+                index(entry);
+                replaced.add(entry);
+                changed = true;
+            } else {
+                final Entry old = entries.get(i++);
+                final Entry entry = sorted.get(j++);
+                if (old.sameAs(entry)) {
+                    replaced.add(old);
+                } else {
+                    final Entry newEntry = stored(entry);
+                    unindex(old);
+                    index(newEntry);
+                    replaced.add(newEntry);
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            entries.clear();
+            entries.addAll(replaced);
+            buildIndices();
+            ++modCount;
+            publish();
+        }
+        return changed;
+    }
+
+    /**
+     * Merge sorted entries into the entries. If a left string exists, the history of the new entry is appended to the history of the existing one.
+     *
+     * @param sorted input the entries sorted by their folded left strings
+     */
+    private void merge(final List<Entry> sorted) {
+        if (sorted.isEmpty()) {
+            return;
+        }
+        final int size = entries.size();
+        if (size == 0 || Entry.ORDER.compare(entries.get(size - 1), sorted.get(0)) < 0) {
+            // The new entries are all after the existing entries, which is the usual case when reading a sorted file.
+            for (final Entry entry : sorted) {
+                final Entry newEntry = stored(entry);
+                entries.add(newEntry);
+                index(newEntry);
+            }
+        } else {
+            final ArrayList<Entry> merged = new ArrayList<>(size + sorted.size());
+            final int sortedSize = sorted.size();
+            int i = 0;
+            int j = 0;
+            while (i < size || j < sortedSize) {
+                final int c;
+                if (i == size) {
+                    c = 1;
+                } else if (j == sortedSize) {
+                    c = -1;
+                } else {
+                    c = Entry.ORDER.compare(entries.get(i), sorted.get(j));
+                }
+                if (c < 0) {
+                    merged.add(entries.get(i++));
+                } else {
+                    final Entry entry = sorted.get(j++);
+                    if (c == 0) {
+                        final Entry old = entries.get(i++);
+                        final Entry revised = stored(old.revise(entry));
+                        unindex(old);
+                        index(revised);
+                        merged.add(revised);
+                    } else {
+                        final Entry newEntry = stored(entry);
+                        index(newEntry);
+                        merged.add(newEntry);
+                    }
+                }
+            }
+            entries.clear();
+            entries.addAll(merged);
+        }
+        ++modCount;
+    }
+
+    /**
+     * Put a tuple into the entries. If the left string exists, the right string becomes its newest history.
+     *
+     * @param leftString input the left string
+     * @param rightString input the right string
+     */
+    private void put(final String leftString, final String rightString) {
+        final int index = indexOfLeft(leftString);
+        if (index < 0) {
+            // Insert it at the insertion point to keep the entries sorted.
+            final Entry entry = stored(new Entry(leftString, rightString));
+            entries.add(-(index + 1), entry);
+            index(entry);
+            ++modCount;
+        } else if (!entries.get(index).current().equals(rightString)) {
+            final Entry entry = entries.get(index);
+            final Entry revised = stored(entry.revise(rightString));
+            entries.set(index, revised);
+            unindex(entry);
+            index(revised);
+            ++modCount;
+        }
+    }
+
+    /**
+     * Remove an entry from the entries and the indices.
+     *
+     * @param index input the index of the entry
+     * @return the removed entry
+     */
+    private Entry remove(final int index) {
+        final Entry entry = entries.remove(index);
+        unindex(entry);
+        ++modCount;
+        return entry;
+    }
+
+    /**
+     * Add a tuple. If the left string exists, the right string becomes its newest history. The strings are trimmed.
+     *
+     * @param leftString input the left string
+     * @param rightString input the right string
+     * @return true if the data were changed, or false if the data already exist
+     * @throws DataException if data are not loaded, the tuple is invalid or the change cannot be written
+     */
+    public boolean add(final String leftString, final String rightString) throws DataException {
+        final DataEvent event = metrics.start(DataMetrics.Operation.ADD);
+        try {
+            return doAdd(leftString, rightString);
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    private boolean doAdd(final String untrimmedLeftString, final String untrimmedRightString) throws DataException {
+        requireLoaded();
+        // The journal and the data file are trimmed when they are read, so the strings in memory must be the same.
+        final String leftString = untrimmedLeftString.trim();
+        final String rightString = untrimmedRightString.trim();
+        if (leftString.isEmpty() || rightString.isEmpty() || leftString.contains("=") || rightString.contains("=")) {
+            throw new DataException("Your strings cannot be empty or contain '='!", null);
+        }
+        if (hasLineBreak(leftString) || hasLineBreak(rightString)) {
+            // A line break would split the tuple into two lines of the journal and the data file.
+            throw new DataException("Your strings cannot contain line breaks!", null);
+        }
+        if (rightString.contains(Entry.HISTORY_SEPARATOR)) {
+            throw new DataException("Your right string cannot contain '-->'!", null);
+        }
+        final int index = indexOfLeft(leftString);
+        if (index >= 0 && entries.get(index).current().equals(rightString)) {
+            return false;
+        }
+        put(leftString, rightString);
+        publish();
+        try {
+            journal.appendAdd(leftString, rightString);
+        } catch (final IOException e) {
+            throw new DataException("Can't not write data correctly! The journal file cannot be written.", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e);
+        }
+        return true;
+    }
+
+    /**
+     * Delete a tuple.
+     *
+     * @param index input the index of the tuple
+     * @return true if the tuple was deleted, or false if the index is out of range
+     * @throws DataException if data are not loaded or the change cannot be written
+     */
+    public boolean delete(final int index) throws DataException {
+        final DataEvent event = metrics.start(DataMetrics.Operation.DELETE);
+        try {
+            return doDelete(index);
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    private boolean doDelete(final int index) throws DataException {
+        requireLoaded();
+        if (index < 0 || index >= entries.size()) {
+            return false;
+        }
+        final Entry entry = remove(index);
+        publish();
+        try {
+            journal.appendDelete(entry.left());
+        } catch (final IOException e) {
+            throw new DataException("Can't not write data correctly! The journal file cannot be written.", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e);
+        }
+        return true;
+    }
+
+    /**
+     * Delete a tuple by its left string. Unlike an index, a left string still points to the same tuple after other tuples are added or deleted.
+     *
+     * @param leftString input the left string of the tuple
+     * @return true if the tuple was deleted, or false if it doesn't exist
+     * @throws DataException if data are not loaded or the change cannot be written
+     */
+    public boolean delete(final String leftString) throws DataException {
+        final int index = indexOfLeft(leftString);
+        if (index < 0) {
+            return false;
+        }
+        return delete(index);
+    }
+
+    /**
+     * Make sure that all data were loaded before they are changed. A change made while loading would be applied to the entries and appended to the journal, and then the journal would apply it again when the loading ends.
+     *
+     * @throws DataException if data are not loaded
+     */
+    private void requireLoaded() throws DataException {
+        if (!loaded) {
+            throw new DataException("Data cannot be changed before they are loaded! Please try again later.", "Path: ".concat(dataPath));
+        }
+    }
+
+    /**
+     * Import tuples from a file in bulk. Tuples with the same left string are combined into one entry like reading data, and then they are applied as one batch: the entries are sorted once and the data file is written once, instead of one change per tuple. If a left string exists, the right strings which are different from its newest right string become its newest history.
+     *
+     * A row which is malformed or invalid is skipped and reported, and the other rows are still imported.
+     *
+     * @param file input the file
+     * @param format input the format of the file
+     * @param progress input the consumer of the ratio of rows which have been read, from 0 to 1, or null
+     * @return the report
+     * @throws DataException if data are not loaded or the data file cannot be written, and then nothing is changed
+     */
+    public ImportReport importTuples(final File file, final TupleFormat format, final DoubleConsumer progress) throws DataException {
+        if (!loaded) {
+            throw new DataException("Data cannot be imported before they are loaded!", "Path: ".concat(dataPath));
+        }
+        // Never overwrite the changes made by other programs. Read them first.
+        reloadIfModified();
+
+        final ArrayList<DataException> problems = new ArrayList<>();
+        final HashMap<String, Entry> tuples = new HashMap<>();
+        int rows = 0;
+        final String path = "Path: ".concat(file.getAbsolutePath());
+        try (TupleReader reader = TupleReader.open(file, format)) {
+            while (reader.next()) {
+                rows = reader.row;
+                if (progress != null && (rows & 0x3FF) == 0) {
+                    progress.accept(reader.progress());
+                }
+                final String detail = path.concat("\nLine: ").concat(String.valueOf(reader.line));
+                String problem = reader.problem;
+                String[] revisions = null;
+                if (problem == null) {
+                    revisions = Entry.parseHistory(reader.right);
+                    problem = checkTuple(reader.left, revisions);
+                }
+                if (problem != null) {
+                    problems.add(new DataException("Row ".concat(String.valueOf(reader.row)).concat(" was skipped! ").concat(problem), detail));
+                    continue;
+                }
+                final Entry entry = new Entry(reader.left, revisions);
+                final Entry same = tuples.putIfAbsent(entry.folded, entry);
+                if (same != null) {
+                    tuples.put(entry.folded, same.revise(entry));
+                }
+            }
+        } catch (final IOException e) {
+            // Keep the rows which have been read, like reading data.
+            problems.add(new DataException("Cannot read the file correctly! Rows after ".concat(String.valueOf(rows)).concat(" were not imported."), path, e));
+        }
+
+        // Sort the imported tuples once, and merge them into the entries.
+        final ArrayList<Entry> imported = new ArrayList<>(tuples.values());
+        imported.sort(Entry.ORDER);
+        final int size = entries.size();
+        final int importedSize = imported.size();
+        final ArrayList<Entry> merged = new ArrayList<>(size + importedSize);
+        int added = 0;
+        int revised = 0;
+        int unchanged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < importedSize) {
+            final int c;
+            if (i == size) {
+                c = 1;
+            } else if (j == importedSize) {
+                c = -1;
+            } else {
+                c = Entry.ORDER.compare(entries.get(i), imported.get(j));
+            }
+            if (c < 0) {
+                merged.add(entries.get(i++));
+            } else if (c > 0) {
+                merged.add(imported.get(j++));
+                ++added;
+            } else {
+                final Entry old = entries.get(i++);
+                final Entry entry = imported.get(j++);
+                // Like adding them one by one, a right string which is the same as the newest one is not added again. The history which is exported from the entry is not added again either.
+                final ArrayList<String> newRevisions = new ArrayList<>(entry.revisionCount());
+                String current = old.current();
+                for (int k = overlapOf(old, entry); k < entry.revisionCount(); ++k) {
+                    final String revision = entry.revision(k);
+                    if (!revision.equals(current)) {
+                        newRevisions.add(revision);
+                        current = revision;
+                    }
+                }
+                if (newRevisions.isEmpty()) {
+                    merged.add(old);
+                    ++unchanged;
+                } else {
+                    merged.add(old.revise(newRevisions.toArray(new String[newRevisions.size()])));
+                    ++revised;
+                }
+            }
+        }
+        if (added + revised > 0) {
+            // Write the data file first, so that nothing is changed if it cannot be written. The journal is included in the entries.
+            final DataEvent event = metrics.start(DataMetrics.Operation.SAVE);
+            try {
+                write(merged);
+            } finally {
+                metrics.stop(event);
+            }
+            replace(merged);
+            try {
+                journal.clear();
+            } catch (final IOException e) {
+                problems.add(new DataException("Can't not remove the journal file!", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e));
+            }
+        }
+        if (progress != null) {
+            progress.accept(1);
+        }
+        return new ImportReport(rows, added, revised, unchanged, problems);
+    }
+
+    /**
+     * Check whether a tuple can be put into data, like {@link #add(String, String)}.
+     *
+     * @param leftString input the left string
+     * @param revisions input the right strings
+     * @return the problem, or null if the tuple is valid
+     */
+    private static String checkTuple(final String leftString, final String[] revisions) {
+        if (leftString.isEmpty() || leftString.contains("=")) {
+            return "The left string cannot be empty or contain '='.";
+        }
+        if (hasLineBreak(leftString)) {
+            return "The left string cannot contain line breaks.";
+        }
+        for (final String revision : revisions) {
+            if (revision.isEmpty() || revision.contains("=")) {
+                return "The right string cannot be empty or contain '='.";
+            }
+            if (hasLineBreak(revision)) {
+                return "The right string cannot contain line breaks.";
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasLineBreak(final String str) {
+        return str.indexOf('\n') >= 0 || str.indexOf('\r') >= 0;
+    }
+
+    /**
+     * Get the length of the longest history which the history of an entry ends with and the history of a newer entry starts with.
+     *
+     * @param old input the entry
+     * @param newer input the newer entry
+     * @return the number of right strings
+     */
+    private static int overlapOf(final Entry old, final Entry newer) {
+        final int oldCount = old.revisionCount();
+        for (int n = Math.min(oldCount, newer.revisionCount()); n > 1; --n) {
+            int k = 0;
+            while (k < n && old.revision(oldCount - n + k).equals(newer.revision(k))) {
+                ++k;
+            }
+            if (k == n) {
+                return n;
+            }
+        }
+        // A single right string is handled by comparing it with the newest one.
+        return 0;
+    }
+
+    /**
+     * Export all tuples of the current version into a file. The version is never modified while it is being exported, so it can be called by any thread.
+     *
+     * @param file input the file
+     * @param format input the format of the file
+     * @param sourceLanguage input the language of left strings, such as "en", which is only used by TMX
+     * @param targetLanguage input the language of right strings, such as "zh-TW", which is only used by TMX
+     * @return the number of exported tuples
+     * @throws DataException if the file cannot be written
+     */
+    public int exportTuples(final File file, final TupleFormat format, final String sourceLanguage, final String targetLanguage) throws DataException {
+        final List<Entry> snapshot = view.entries();
+        try (TupleWriter writer = TupleWriter.create(file, format, sourceLanguage, targetLanguage)) {
+            for (final Entry entry : snapshot) {
+                writer.write(entry);
+            }
+        } catch (final IOException e) {
+            throw new DataException("Cannot export data correctly!", "Path: ".concat(file.getAbsolutePath()), e);
+        }
+        return snapshot.size();
+    }
+
+    /**
+     * Whether the journal has so many changes that it should be compacted.
+     *
+     * @return true if it should be compacted
+     */
+    public boolean shouldCompact() {
+        return loaded && journal.size() >= COMPACT_THRESHOLD;
+    }
+
+    /**
+     * Write all entries into the data file and clear the journal, if there is any change in the journal.
+     *
+     * @throws DataException if the data file cannot be written or the journal cannot be cleared
+     */
+    public void compact() throws DataException {
+        if (!loaded || journal.size() == 0) {
+            return;
+        }
+        // Never overwrite the changes made by other programs. Read them first.
+        reloadIfModified();
+        writeData();
+        buildIndices();
+        try {
+            journal.clear();
+        } catch (final IOException e) {
+            throw new DataException("Can't not remove the journal file!", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e);
+        }
+    }
+
+    /**
+     * Write all entries of the current version into the data file. The version is never modified while it is being written, so the data can be changed at the same time.
+     *
+     * @throws DataException if the data file cannot be written
+     */
+    public void writeData() throws DataException {
+        final DataEvent event = metrics.start(DataMetrics.Operation.SAVE);
+        try {
+            write(view.entries());
+        } finally {
+            metrics.stop(event);
+        }
+    }
+
+    /**
+     * Write entries into the data file.
+     *
+     * @param snapshot input the sorted entries, which are never modified while they are being written
+     * @throws DataException if the data file cannot be written
+     */
+    private void write(final List<Entry> snapshot) throws DataException {
+        final File dataFile = new File(dataPath);
+        final File tmpFile = new File(dataPath.concat(".tmp"));
+        // The journal is included in the entries, so the file has a later generation than the journal, and the journal is never replayed over it even if it cannot be removed.
+        final long generation = journal.generation() + 1;
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "utf8"))) {
+            bw.write(DataFileReader.GENERATION_HEADER.concat(String.valueOf(generation)));
+            // The entries are already sorted, so just write them in order.
+            final int size = snapshot.size();
+            for (int i = 0; i < size; ++i) {
+                final Entry entry = snapshot.get(i);
+                bw.write('\n');
+                bw.write(entry.left());
+                bw.write(" = ");
+                bw.write(entry.history());
+            }
+            bw.flush();
+        } catch (final IOException e) {
+            throw new DataException("Can't not write data correctly! The database file cannot be written, or some data's format are incorrect.", "Path: ".concat(dataPath), e);
+        }
+        try {
+            // Replace the data file at once, so that it is never half-written.
+            Files.move(tmpFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new DataException("Can't not write data correctly! The database file cannot be replaced.", "Path: ".concat(dataPath), e);
+        }
+        journal.include(generation);
+        stampFile();
+        try {
+            BinarySnapshot.write(dataFile, snapshot);
+        } catch (final IOException e) {
+            // The snapshot is only a cache, and it is out of date now.
+            BinarySnapshot.delete(dataFile);
+        }
+    }
+
+    /**
+     * The loader of data. It reads the data step by step, so that the entries which have been read can be used before all data are read.
+     */
+    public class Loader {
+
+        /**
+         * The time when the loading started.
+         */
+        private final long startTime = System.nanoTime();
+        /**
+         * The event of the loading.
+         */
+        private final DataEvent event = metrics.start(DataMetrics.Operation.LOAD);
+        /**
+         * The reader of the database file, or null if the database file is not being read.
+         */
+        private DataFileReader reader;
+        /**
+         * The generation of the database file, so that the journal records included in it are not replayed again.
+         */
+        private long generation;
+        /**
+         * Whether the loading started.
+         */
+        private boolean started;
+        /**
+         * Whether the database has something wrong.
+         */
+        private boolean broken;
+        /**
+         * Whether the loading is done.
+         */
+        private boolean done;
+        /**
+         * The ratio of data which have been read.
+         */
+        private double progress;
+        /**
+         * The problems found while reading.
+         */
+        private final ArrayList<DataException> problems = new ArrayList<>();
+
+        /**
+         * Construct a loader.
+         */
+        private Loader() {
+
+        }
+
+        /**
+         * Get the problems found while reading. The data which can be read are still loaded even if there are problems.
+         *
+         * @return the problems
+         */
+        public List<DataException> getProblems() {
+            return Collections.unmodifiableList(problems);
+        }
+
+        /**
+         * Get the ratio of data which have been read.
+         *
+         * @return the ratio, from 0 to 1
+         */
+        public double getProgress() {
+            return progress;
+        }
+
+        /**
+         * Close the reader of the database file, so that the file can be replaced.
+         */
+        private void closeReader() {
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                // Nothing to do.
+            }
+            reader = null;
+        }
+
+        /**
+         * Read the next part of data.
+         *
+         * @param maxEntries input the maximum number of entries to read in this step
+         * @return true if all data were read
+         */
+        public boolean step(final int maxEntries) {
+            if (done) {
+                return true;
+            }
+            final File dataFile = new File(dataPath);
+            if (!started) {
+                started = true;
+                loaded = false;
+                loadEntries = 0;
+                entries.clear();
+                leftIndex.clear();
+                rightIndex.clear();
+                if (historyIndex != null) {
+                    historyIndex.clear();
+                }
+                ++modCount;
+                stampFile();
+                try {
+                    reader = new DataFileReader(dataFile);
+                    generation = reader.generation();
+                } catch (final IOException e) {
+                    problems.add(new DataException("Cannot not read data correctly! The database doesn't exist!", "Path: ".concat(dataPath), e));
+                }
+                final List<Entry> snapshot = reader != null ? BinarySnapshot.read(dataFile) : null;
+                if (snapshot != null) {
+                    loadEntries = snapshot.size();
+                    merge(snapshot);
+                    closeReader();
+                }
+            }
+            if (reader != null) {
+                final HashMap<String, Entry> part = new HashMap<>();
+                boolean end = false;
+                try {
+                    final int count = readTuples(reader, maxEntries, part);
+                    loadEntries += count;
+                    end = count < maxEntries;
+                } catch (final IOException e) {
+                    end = true;
+                    broken = true;
+                    problems.add(new DataException("Cannot not read data correctly! The database has something wrong!", "Path: ".concat(dataPath).concat("\nLine: ").concat(String.valueOf(reader.lineNumber())), e));
+                }
+                // Sort every part once, so that the entries never have to be sorted again.
+                final ArrayList<Entry> sorted = new ArrayList<>(part.values());
+                sorted.sort(Entry.ORDER);
+                merge(sorted);
+                publish();
+                progress = reader.progress();
+                if (!end) {
+                    return false;
+                }
+                closeReader();
+                if (!broken) {
+                    // Changes are rejected while loading and the journal is not replayed yet, so the snapshot only has the tuples of the data file.
+                    try {
+                        BinarySnapshot.write(dataFile, entries);
+                    } catch (final IOException e) {
+                        // The snapshot is only a cache. Parse the database again next time.
+                    }
+                }
+            }
+            try {
+                journal.replay(generation, new Journal.Handler() {
+                    @Override
+                    public void add(final String left, final String right) {
+                        put(left, right);
+                    }
+
+                    @Override
+                    public void delete(final String left) {
+                        final int index = indexOfLeft(left);
+                        if (index >= 0) {
+                            remove(index);
+                        }
+                    }
+                });
+            } catch (final IOException e) {
+                problems.add(new DataException("Cannot not read data correctly! The journal has something wrong!", "Path: ".concat(dataPath).concat(Journal.EXTENSION), e));
+            }
+            // The entries are not indexed while loading. Index all of them at once.
+            buildIndices();
+            publish();
+            loadNanos = System.nanoTime() - startTime;
+            measureEntryBytes();
+            progress = 1;
+            done = true;
+            loaded = true;
+            metrics.stop(event, loadNanos);
+            return true;
+        }
+    }
+
+    /**
+     * The folded strings of entries which can be matched.
+     */
+    private enum Side {
+        /**
+         * The folded left strings.
+         */
+        LEFT {
+            @Override
+            boolean contains(final Entry entry, final String folded) {
+                return entry.folded.contains(folded);
+            }
+        },
+        /**
+         * The newest folded right strings.
+         */
+        RIGHT {
+            @Override
+            boolean contains(final Entry entry, final String folded) {
+                return entry.currentContains(folded);
+            }
+        },
+        /**
+         * The older folded right strings.
+         */
+        HISTORY {
+            @Override
+            boolean contains(final Entry entry, final String folded) {
+                return entry.olderContains(folded);
+            }
+        };
+
+        /**
+         * Whether the folded string of an entry on this side contains a folded string. It does not make a substring of the right strings.
+         *
+         * @param entry input an entry
+         * @param folded input a folded string
+         * @return true if it contains the string
+         */
+        abstract boolean contains(final Entry entry, final String folded);
+    }
+
+    /**
+     * The matches of the last substring query, so that pressing "Next" does not have to query again.
+     */
+    private class Matches {
+
+        /**
+         * The folded query.
+         */
+        private String query;
+        /**
+         * The modification count of the entries when the query was done.
+         */
+        private int modCount = -1;
+        /**
+         * The indices of the matched entries, which are sorted or ranked.
+         */
+        private int[] positions;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR event of an operation of data. It is only recorded while a flight recording is running, e.g. with "-XX:StartFlightRecording", so that freezes can be correlated with the growth of dictionaries.
+ *
+ * @author Magic Len
+ */
+@Name("org.magiclen.wordstransformerfx.DataOperation")
+@Label("Data Operation")
+@Category("Words Transformer")
+@Description("Loading, saving, searching, adding or deleting of a dictionary")
+final class DataEvent extends Event {
+
+    // -----Object Variable-----
+    @Label("Operation")
+    String operation;
+    @Label("Dictionary")
+    String dictionary;
+    @Label("Entries")
+    int entries;
+    @Label("Heap Estimate")
+    @jdk.jfr.DataAmount
+    long heapEstimate;
+    /**
+     * The operation to record in the histograms. It is not a field of the event.
+     */
+    transient DataMetrics.Operation kind;
+    /**
+     * The time when the operation started. It is not a field of the event.
+     */
+    transient long startNanos;
+}
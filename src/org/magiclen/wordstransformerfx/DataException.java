@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+/**
+ * The exception thrown when data cannot be read, written or changed.
+ *
+ * @author Magic Len
+ */
+public class DataException extends Exception {
+
+    // -----Class Constant-----
+    private static final long serialVersionUID = 1L;
+
+    // -----Object Constant-----
+    /**
+     * The detail of the problem, such as the path of a file.
+     */
+    private final String detail;
+
+    // -----Constructor-----
+    /**
+     * Construct an exception.
+     *
+     * @param message input the message
+     * @param detail input the detail of the problem, or null
+     */
+    public DataException(final String message, final String detail) {
+        super(message);
+        this.detail = detail;
+    }
+
+    /**
+     * Construct an exception.
+     *
+     * @param message input the message
+     * @param detail input the detail of the problem, or null
+     * @param cause input the cause
+     */
+    public DataException(final String message, final String detail, final Throwable cause) {
+        super(message, cause);
+        this.detail = detail;
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the detail of the problem.
+     *
+     * @return the detail, or null
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        if (detail == null) {
+            return getMessage();
+        }
+        return getMessage().concat(" ").concat(detail);
+    }
+}
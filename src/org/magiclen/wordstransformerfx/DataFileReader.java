@@ -0,0 +1,353 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * A reader of database files. It maps the file into memory and finds the boundaries of lines and '=' in the UTF-8 bytes directly, so that only the left strings and the right strings are decoded, without any line buffer or line string.
+ *
+ * The first line of a database file written by the program is its generation, like "# generation 3", which tells which journal records are included in it. A file without it, such as a file written by hand, has the generation 0.
+ *
+ * A mapped file cannot be replaced or deleted on Windows, so a mapped window is released as soon as it is not used, and the last one is released when the reader is closed. The decoded strings never refer to a window. If mapped windows cannot be released on this JVM, the windows are read into the heap instead.
+ *
+ * @author Magic Len
+ */
+final class DataFileReader implements Closeable {
+
+    // -----Class Constant-----
+    /**
+     * The beginning of the first line which has the generation of the file.
+     */
+    static final String GENERATION_HEADER = "# generation ";
+    /**
+     * The maximum size of a mapped window.
+     */
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+    /**
+     * The initial size of a window which is read into the heap. It grows for a longer line.
+     */
+    private static final long HEAP_WINDOW_SIZE = 1 << 24;
+    /**
+     * The releaser of mapped buffers, or null if they cannot be released before they are collected.
+     */
+    private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+    // -----Class Method-----
+    private static Consumer<ByteBuffer> unmapper() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            final Object unsafe = field.get(null);
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (final ReflectiveOperationException ex) {
+                    // It is released when it is collected.
+                }
+            };
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    // -----Object Constant-----
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+    /**
+     * The size of the file.
+     */
+    private final long size;
+
+    // -----Object Variable-----
+    /**
+     * The current window, which is mapped or read into the heap, or null if the reader is closed.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The maximum size of a window.
+     */
+    private long windowSize = UNMAPPER != null ? WINDOW_SIZE : HEAP_WINDOW_SIZE;
+    /**
+     * The offset of the mapped window in the file.
+     */
+    private long windowOffset;
+    /**
+     * The scratch of decoding.
+     */
+    private byte[] scratch = new byte[256];
+    /**
+     * The number of the current line.
+     */
+    private int lineNumber;
+    /**
+     * The current left string.
+     */
+    private String left;
+    /**
+     * The current right string.
+     */
+    private String right;
+    /**
+     * The generation of the file.
+     */
+    private long generation;
+
+    // -----Constructor-----
+    /**
+     * Open a database file.
+     *
+     * @param file input the database file
+     * @throws IOException if the file cannot be opened
+     */
+    DataFileReader(final File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        size = channel.size();
+        map(0);
+        // Skip the byte order mark.
+        if (buffer.remaining() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            buffer.position(3);
+        }
+        readGeneration();
+    }
+
+    // -----Object Method-----
+    private void map(final long offset) throws IOException {
+        release();
+        windowOffset = offset;
+        final long length = Math.min(size - offset, windowSize);
+        if (UNMAPPER != null) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            return;
+        }
+        final ByteBuffer heap = ByteBuffer.allocate((int) length);
+        while (heap.hasRemaining()) {
+            if (channel.read(heap, offset + heap.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        heap.flip();
+        buffer = heap;
+    }
+
+    /**
+     * Read the generation if the first line has it. Otherwise, the first line is read as a tuple.
+     */
+    private void readGeneration() {
+        final int limit = buffer.limit();
+        int p = buffer.position();
+        for (int i = 0; i < GENERATION_HEADER.length(); ++i, ++p) {
+            if (p == limit || buffer.get(p) != GENERATION_HEADER.charAt(i)) {
+                return;
+            }
+        }
+        final int digits = p;
+        long value = 0;
+        while (p < limit && buffer.get(p) >= '0' && buffer.get(p) <= '9' && value < Long.MAX_VALUE / 10) {
+            value = value * 10 + buffer.get(p++) - '0';
+        }
+        final int end = p;
+        while (p < limit && buffer.get(p) != '\n' && (buffer.get(p) & 0xFF) <= ' ') {
+            ++p;
+        }
+        if (end == digits || p < limit && buffer.get(p) != '\n') {
+            return;
+        }
+        generation = value;
+        lineNumber = 1;
+        buffer.position(p < limit ? p + 1 : p);
+    }
+
+    /**
+     * Release the current window. It must not be used after that.
+     */
+    private void release() {
+        if (buffer instanceof MappedByteBuffer && UNMAPPER != null) {
+            UNMAPPER.accept(buffer);
+        }
+        buffer = null;
+    }
+
+    /**
+     * Read the next tuple. Blank lines are skipped.
+     *
+     * @return true if a tuple was read, or false if the end of the file was reached
+     * @throws IOException if the file cannot be read or the line has something wrong
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            int end = indexOfLineFeed(start, limit);
+            if (end < 0 && windowOffset + limit < size) {
+                // The line crosses the end of the window. Map a new window from the beginning of the line, and a larger one if the line is longer than a window.
+                final long lineOffset = windowOffset + start;
+                map(lineOffset);
+                start = 0;
+                limit = buffer.limit();
+                end = indexOfLineFeed(start, limit);
+                while (end < 0 && windowOffset + limit < size && windowSize < WINDOW_SIZE) {
+                    windowSize = Math.min(windowSize * 2, WINDOW_SIZE);
+                    map(lineOffset);
+                    limit = buffer.limit();
+                    end = indexOfLineFeed(start, limit);
+                }
+            }
+            if (end < 0) {
+                if (start == limit) {
+                    return false;
+                }
+                end = limit;
+                buffer.position(end);
+            } else {
+                buffer.position(end + 1);
+            }
+            ++lineNumber;
+
+            // Trim the line. Bytes of multi-byte UTF-8 characters are never white spaces.
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                ++start;
+            }
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                --end;
+            }
+            if (start == end) {
+                continue;
+            }
+
+            int equalStart = start;
+            while (equalStart < end && buffer.get(equalStart) != '=') {
+                ++equalStart;
+            }
+            int equalEnd = equalStart;
+            while (equalEnd < end && buffer.get(equalEnd) == '=') {
+                ++equalEnd;
+            }
+            for (int i = equalEnd; i < end; ++i) {
+                if (buffer.get(i) == '=') {
+                    throw broken();
+                }
+            }
+            left = decodeTrimmed(start, equalStart);
+            right = decodeTrimmed(equalEnd, end);
+            if (left.isEmpty() || right.isEmpty()) {
+                throw broken();
+            }
+            return true;
+        }
+    }
+
+    private int indexOfLineFeed(final int start, final int limit) {
+        for (int i = start; i < limit; ++i) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String decodeTrimmed(int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            ++start;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            --end;
+        }
+        final int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; ++i) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private IOException broken() {
+        return new IOException("Broken tuple at line ".concat(String.valueOf(lineNumber)));
+    }
+
+    /**
+     * Get the left string of the current tuple.
+     *
+     * @return the left string
+     */
+    String left() {
+        return left;
+    }
+
+    /**
+     * Get the right string of the current tuple, including its history.
+     *
+     * @return the right string
+     */
+    String right() {
+        return right;
+    }
+
+    /**
+     * Get the generation of the file.
+     *
+     * @return the generation, or 0 if the file doesn't have it
+     */
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Get the ratio of bytes which have been read.
+     *
+     * @return the ratio, from 0 to 1
+     */
+    double progress() {
+        if (size == 0 || buffer == null) {
+            return 1;
+        }
+        return (double) (windowOffset + buffer.position()) / size;
+    }
+
+    /**
+     * Get the number of the current line.
+     *
+     * @return the line number, starting from 1
+     */
+    int lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+        channel.close();
+    }
+}
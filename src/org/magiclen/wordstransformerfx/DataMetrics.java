@@ -0,0 +1,213 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of a dictionary. The number and the latency histogram of every operation are recorded, with the size and the heap estimate of the dictionary. They can be read by any thread, exposed through JMX, and every operation is also a JFR event.
+ *
+ * @author Magic Len
+ */
+public final class DataMetrics implements DataMetricsMXBean {
+
+    // -----Class Constant-----
+    /**
+     * The domain of the JMX object names.
+     */
+    public static final String DOMAIN = "org.magiclen.wordstransformerfx";
+
+    // -----Class Class-----
+    /**
+     * Operations of data.
+     */
+    public enum Operation {
+        LOAD, SAVE, SEARCH, ADD, DELETE
+    }
+
+    // -----Class Method-----
+    private static OperationStatistics statistics(final LatencyHistogram histogram) {
+        return new OperationStatistics(histogram.count(), histogram.mean() / 1e6, histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6, histogram.percentile(99) / 1e6, histogram.max() / 1e6);
+    }
+
+    // -----Object Constant-----
+    private final Data data;
+    private final EnumMap<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+
+    // -----Constructor-----
+    /**
+     * Construct the metrics of a dictionary.
+     *
+     * @param data input the dictionary
+     */
+    DataMetrics(final Data data) {
+        this.data = data;
+        for (final Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    // -----Object Method-----
+    /**
+     * Start timing an operation.
+     *
+     * @param operation input the operation
+     * @return the event of the operation, which must be given to {@link #stop(DataEvent)} when the operation is done
+     */
+    DataEvent start(final Operation operation) {
+        final DataEvent event = new DataEvent();
+        event.kind = operation;
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stop timing an operation, and record it.
+     *
+     * @param event input the event returned by {@link #start(Operation)}
+     */
+    void stop(final DataEvent event) {
+        stop(event, System.nanoTime() - event.startNanos);
+    }
+
+    /**
+     * Stop timing an operation, and record it with a latency which was measured by the caller, e.g. a loading which is done step by step.
+     *
+     * @param event input the event returned by {@link #start(Operation)}
+     * @param nanos input the latency
+     */
+    void stop(final DataEvent event, final long nanos) {
+        event.end();
+        histograms.get(event.kind).record(nanos);
+        if (event.shouldCommit()) {
+            event.operation = event.kind.name();
+            event.dictionary = data.getPath();
+            event.entries = data.count();
+            event.heapEstimate = data.getHeapEstimate();
+            event.commit();
+        }
+    }
+
+    /**
+     * Get the statistics of an operation.
+     *
+     * @param operation input the operation
+     * @return the statistics
+     */
+    public OperationStatistics getStatistics(final Operation operation) {
+        return statistics(histograms.get(operation));
+    }
+
+    @Override
+    public String getPath() {
+        return data.getPath();
+    }
+
+    @Override
+    public int getEntryCount() {
+        return data.count();
+    }
+
+    @Override
+    public long getHeapEstimate() {
+        return data.getHeapEstimate();
+    }
+
+    @Override
+    public int getJournalSize() {
+        return data.getJournalSize();
+    }
+
+    @Override
+    public OperationStatistics getLoad() {
+        return getStatistics(Operation.LOAD);
+    }
+
+    @Override
+    public OperationStatistics getSave() {
+        return getStatistics(Operation.SAVE);
+    }
+
+    @Override
+    public OperationStatistics getSearch() {
+        return getStatistics(Operation.SEARCH);
+    }
+
+    @Override
+    public OperationStatistics getAdd() {
+        return getStatistics(Operation.ADD);
+    }
+
+    @Override
+    public OperationStatistics getDelete() {
+        return getStatistics(Operation.DELETE);
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Get the JMX object name of the metrics.
+     *
+     * @return the object name
+     */
+    public ObjectName getObjectName() {
+        try {
+            return new ObjectName(DOMAIN.concat(":type=Data,path=").concat(ObjectName.quote(data.getPath())));
+        } catch (final JMException ex) {
+            throw new InternalError(ex);
+        }
+    }
+
+    /**
+     * Register the metrics in the platform MBean server. It does nothing if they are registered already.
+     */
+    public void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, getObjectName());
+        } catch (final InstanceAlreadyExistsException ex) {
+            // Registered already.
+        } catch (final JMException ex) {
+            throw new InternalError(ex);
+        }
+    }
+
+    /**
+     * Unregister the metrics from the platform MBean server. It does nothing if they are not registered.
+     */
+    public void unregister() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(getObjectName());
+        } catch (final InstanceNotFoundException ex) {
+            // Not registered.
+        } catch (final JMException ex) {
+            throw new InternalError(ex);
+        }
+    }
+}
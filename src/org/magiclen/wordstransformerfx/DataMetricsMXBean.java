@@ -0,0 +1,69 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+/**
+ * The management interface of the metrics of a dictionary. It is registered in the platform MBean server, so that it can be watched with tools like JConsole and VisualVM.
+ *
+ * @author Magic Len
+ */
+public interface DataMetricsMXBean {
+
+    /**
+     * Get the path of the dictionary file.
+     *
+     * @return the absolute path
+     */
+    String getPath();
+
+    /**
+     * Get the number of tuples.
+     *
+     * @return the number
+     */
+    int getEntryCount();
+
+    /**
+     * Get the estimated heap size of the tuples and their indices.
+     *
+     * @return bytes
+     */
+    long getHeapEstimate();
+
+    /**
+     * Get the number of changes which are not written into the dictionary file yet.
+     *
+     * @return the number
+     */
+    int getJournalSize();
+
+    OperationStatistics getLoad();
+
+    OperationStatistics getSave();
+
+    OperationStatistics getSearch();
+
+    OperationStatistics getAdd();
+
+    OperationStatistics getDelete();
+
+    /**
+     * Forget all recorded latencies.
+     */
+    void reset();
+}
@@ -0,0 +1,310 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable version of data. A new version is published by {@link Data} after every change, which copies the entries once, and the old versions are never modified. So any number of threads can read a version without locking while the data are being changed or saved, and an index of a version always points to the same tuple.
+ *
+ * @author Magic Len
+ */
+public final class DataView {
+
+    // -----Class Constant-----
+    /**
+     * The view of no data.
+     */
+    static final DataView EMPTY = new DataView(new Entry[0], 0, false);
+
+    // -----Class Class-----
+    /**
+     * A tuple found by searching.
+     */
+    public static final class Hit {
+
+        /**
+         * The tuple.
+         */
+        private final Entry entry;
+        /**
+         * Whether the left string contains the query. If not, one of the right strings contains it.
+         */
+        private final boolean left;
+        /**
+         * Whether only the older right strings contain the query, not the newest one.
+         */
+        private final boolean history;
+
+        Hit(final Entry entry, final boolean left, final boolean history) {
+            this.entry = entry;
+            this.left = left;
+            this.history = history;
+        }
+
+        public String getLeft() {
+            return entry.left();
+        }
+
+        public String getRight() {
+            return entry.current();
+        }
+
+        public String getAllRight() {
+            return entry.history();
+        }
+
+        public boolean isLeft() {
+            return left;
+        }
+
+        /**
+         * Whether the tuple is found by an older right string, which has been replaced by the newest one.
+         *
+         * @return true if it is found by its history
+         */
+        public boolean isHistory() {
+            return history;
+        }
+    }
+
+    // -----Object Constant-----
+    /**
+     * All entries, sorted by their folded left strings. It is never modified.
+     */
+    private final Entry[] entries;
+    /**
+     * The list view of the entries.
+     */
+    private final List<Entry> list;
+    /**
+     * The modification count of the data when this view was published.
+     */
+    private final int version;
+    /**
+     * Whether the older right strings are searched.
+     */
+    private final boolean history;
+
+    // -----Object Variable-----
+    /**
+     * The transformer built from the entries. It is built when it is used for the first time.
+     */
+    private volatile Transformer transformer;
+
+    // -----Constructor-----
+    /**
+     * Construct a view. The entries must not be modified after that.
+     *
+     * @param entries input the sorted entries
+     * @param version input the modification count of the data
+     * @param history input true to search the older right strings, or false to search only the newest right strings
+     */
+    DataView(final Entry[] entries, final int version, final boolean history) {
+        this.entries = entries;
+        this.list = Collections.unmodifiableList(Arrays.asList(entries));
+        this.version = version;
+        this.history = history;
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the modification count of the data when this view was published.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int count() {
+        return entries.length;
+    }
+
+    /**
+     * Get all entries.
+     *
+     * @return the unmodifiable entries
+     */
+    List<Entry> entries() {
+        return list;
+    }
+
+    public String getAllRight(final int index) {
+        if (index >= entries.length || index < 0) {
+            return "";
+        }
+        return entries[index].history();
+    }
+
+    public String getRight(final int index) {
+        if (index >= entries.length || index < 0) {
+            return "";
+        }
+        return entries[index].current();
+    }
+
+    public String getLeft(final int index) {
+        if (index >= entries.length || index < 0) {
+            return "";
+        }
+        return entries[index].left();
+    }
+
+    /**
+     * Find the index of a left string which is equal to the input string ignoring case.
+     *
+     * @param leftString input a left string
+     * @return the index, or -1 if not found
+     */
+    public int indexOf(final String leftString) {
+        final String folded = Entry.fold(leftString);
+        final int index = lowerBound(folded);
+        if (index < entries.length && entries[index].folded.equals(folded)) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the index of the first entry whose folded left string is not less than a folded string.
+     *
+     * @param folded input a folded string
+     * @return the index, which is the size if there is no such entry
+     */
+    private int lowerBound(final String folded) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (entries[middle].folded.compareTo(folded) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the tuple whose left string is equal to a string ignoring case.
+     *
+     * @param leftString input a left string
+     * @return the tuple, or null if not found
+     */
+    public Hit lookup(final String leftString) {
+        final int index = indexOf(leftString);
+        if (index < 0) {
+            return null;
+        }
+        return new Hit(entries[index], true, false);
+    }
+
+    /**
+     * Complete a prefix with the left strings which start with it ignoring case. The entries are sorted by their folded left strings, so the left strings with the prefix are in a range which is found by binary searching, in O(log n + limit) time.
+     *
+     * @param prefix input the prefix
+     * @param limit input the maximum number of left strings
+     * @return the left strings, in the order of their folded left strings
+     */
+    public List<String> complete(final String prefix, final int limit) {
+        final String folded = Entry.fold(prefix);
+        final ArrayList<String> completions = new ArrayList<>(Math.min(limit, 16));
+        if (folded.isEmpty()) {
+            return completions;
+        }
+        for (int i = lowerBound(folded); i < entries.length && completions.size() < limit; ++i) {
+            final Entry entry = entries[i];
+            if (!entry.folded.startsWith(folded)) {
+                break;
+            }
+            completions.add(entry.left());
+        }
+        return completions;
+    }
+
+    /**
+     * Search tuples whose left strings or newest right strings contain a string ignoring case, in the order of their left strings. The older right strings are searched, too, if the data index them. The position after a left string is used as the cursor, so that the next page can still be found after the data are changed.
+     *
+     * @param str input the string to search
+     * @param after input the left string of the last tuple of the previous page, or null to search from the beginning
+     * @param limit input the maximum number of tuples
+     * @return the tuples
+     */
+    public List<Hit> search(final String str, final String after, final int limit) {
+        final String folded = Entry.fold(str);
+        final ArrayList<Hit> hits = new ArrayList<>(Math.min(limit, 64));
+        final int size = entries.length;
+        int index = 0;
+        if (after != null) {
+            final String foldedAfter = Entry.fold(after);
+            index = lowerBound(foldedAfter);
+            if (index < size && entries[index].folded.equals(foldedAfter)) {
+                ++index;
+            }
+        }
+        for (; index < size && hits.size() < limit; ++index) {
+            final Entry entry = entries[index];
+            if (entry.folded.contains(folded)) {
+                hits.add(new Hit(entry, true, false));
+            } else if (entry.currentContains(folded)) {
+                hits.add(new Hit(entry, false, false));
+            } else if (history && entry.olderContains(folded)) {
+                hits.add(new Hit(entry, false, true));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Get the transformer of this view.
+     *
+     * @return the transformer
+     */
+    Transformer getTransformer() {
+        Transformer t = transformer;
+        if (t == null) {
+            synchronized (this) {
+                t = transformer;
+                if (t == null) {
+                    t = new Transformer(list, true);
+                    transformer = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Transform a text. Every left string in the text is replaced with its newest right string.
+     *
+     * @param in input the text
+     * @param out input the writer of the transformed text
+     * @return the number of replacements
+     * @throws IOException if the text cannot be read or written
+     */
+    public long transform(final Reader in, final Writer out) throws IOException {
+        return getTransformer().transform(in, out);
+    }
+}
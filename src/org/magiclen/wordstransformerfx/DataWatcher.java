@@ -0,0 +1,137 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A watcher of data files. It tells when a data file is modified, e.g. by a text editor, so that the data can be reloaded without restarting the program. The events of a burst of writes are coalesced into one notification.
+ *
+ * @author Magic Len
+ */
+final class DataWatcher implements Closeable {
+
+    // -----Class Constant-----
+    /**
+     * The time (in milliseconds) without events after which the modifications are notified.
+     */
+    private static final long QUIET_TIME = 300;
+
+    // -----Object Constant-----
+    /**
+     * The watch service of the directories of the data files.
+     */
+    private final WatchService watchService;
+    /**
+     * The absolute paths of the watched data files.
+     */
+    private final HashSet<Path> files = new HashSet<>();
+    /**
+     * The action to run when data files are modified. It runs in the thread of the watcher.
+     */
+    private final Runnable onModified;
+    /**
+     * The thread of the watcher.
+     */
+    private final Thread thread;
+
+    // -----Constructor-----
+    /**
+     * Construct and start a watcher.
+     *
+     * @param dataFiles input the data files
+     * @param onModified input the action to run in the thread of the watcher when data files are modified
+     * @throws IOException if the directories cannot be watched
+     */
+    DataWatcher(final Collection<File> dataFiles, final Runnable onModified) throws IOException {
+        this.onModified = onModified;
+        watchService = FileSystems.getDefault().newWatchService();
+        final HashSet<Path> directories = new HashSet<>();
+        for (final File dataFile : dataFiles) {
+            final Path path = dataFile.toPath().toAbsolutePath();
+            files.add(path);
+            final Path directory = path.getParent();
+            if (directory != null && directory.toFile().isDirectory() && directories.add(directory)) {
+                // Editors usually replace a file by renaming a new file, which is a creation.
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        thread = new Thread(this::watch, "Words Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // -----Object Method-----
+    /**
+     * Watch the directories until the watcher is closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                if (!isRelevant(watchService.take())) {
+                    continue;
+                }
+                // Wait for the rest of the writes.
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_TIME, TimeUnit.MILLISECONDS)) != null) {
+                    isRelevant(key);
+                }
+                onModified.run();
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException ex) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Check whether the events of a key are about the data files, and reset the key.
+     *
+     * @param key input the key
+     * @return true if a data file was modified
+     */
+    private boolean isRelevant(final WatchKey key) {
+        final Path directory = (Path) key.watchable();
+        boolean relevant = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            final Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || (context instanceof Path && files.contains(directory.resolve((Path) context)))) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
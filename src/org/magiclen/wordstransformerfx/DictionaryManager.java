@@ -0,0 +1,360 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The manager of many dictionaries, such as glossaries of different projects and language pairs. A dictionary is loaded when it is used for the first time, and the dictionaries which were not used recently are removed from memory when the loaded dictionaries exceed the heap budget.
+ * <p>
+ * It is not thread-safe. Like {@link Data}, it must be used by one thread at a time.
+ *
+ * @author Magic Len
+ */
+public final class DictionaryManager {
+
+    // -----Class Constant-----
+    /**
+     * The name of the directory of additional dictionaries, which is next to the default database file.
+     */
+    public static final String DIRECTORY_NAME = "Dictionaries";
+    /**
+     * The system property of the heap budget, in megabytes.
+     */
+    public static final String HEAP_BUDGET_PROPERTY = "wordstransformer.heapBudget";
+    /**
+     * The extensions of the files which belong to a dictionary but are not dictionaries.
+     */
+    private static final List<String> IGNORED_EXTENSIONS = Arrays.asList(Journal.EXTENSION, BinarySnapshot.EXTENSION, ".tmp");
+
+    // -----Class Class-----
+    /**
+     * A tuple found in a dictionary.
+     */
+    public static final class Match {
+
+        /**
+         * The name of the dictionary.
+         */
+        private final String dictionary;
+        /**
+         * The tuple.
+         */
+        private final DataView.Hit hit;
+
+        private Match(final String dictionary, final DataView.Hit hit) {
+            this.dictionary = dictionary;
+            this.hit = hit;
+        }
+
+        public String getDictionary() {
+            return dictionary;
+        }
+
+        public DataView.Hit getHit() {
+            return hit;
+        }
+    }
+
+    // -----Class Method-----
+    /**
+     * Get the heap budget from the system property, or half of the maximum heap size if it is not set.
+     *
+     * @return bytes
+     */
+    public static long getDefaultHeapBudget() {
+        final String budget = System.getProperty(HEAP_BUDGET_PROPERTY);
+        if (budget != null) {
+            try {
+                return Long.parseLong(budget.trim()) << 20;
+            } catch (final NumberFormatException ex) {
+                // Use the default budget.
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    /**
+     * Create a manager of the default database file and the dictionaries in the directory next to it.
+     *
+     * @param heapBudget input the heap budget, in bytes
+     * @return the manager
+     */
+    public static DictionaryManager createDefault(final long heapBudget) {
+        final DictionaryManager manager = new DictionaryManager(heapBudget);
+        final File defaultFile = new File(Data.getDefaultDataPath());
+        manager.add(Data.DEFAULT_FILE_NAME, defaultFile);
+        final File parent = defaultFile.getParentFile();
+        if (parent != null) {
+            manager.addDirectory(new File(parent, DIRECTORY_NAME));
+        }
+        return manager;
+    }
+
+    /**
+     * Whether a file is a dictionary.
+     *
+     * @param file input a file
+     * @return true if it is a dictionary
+     */
+    private static boolean isDictionary(final File file) {
+        final String name = file.getName();
+        if (!file.isFile() || name.startsWith(".")) {
+            return false;
+        }
+        for (final String extension : IGNORED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // -----Object Constant-----
+    /**
+     * The files of all dictionaries by their names, in the order they were added.
+     */
+    private final LinkedHashMap<String, File> files = new LinkedHashMap<>();
+    /**
+     * The opened dictionaries, from the least recently used one to the most recently used one.
+     */
+    private final LinkedHashMap<String, Data> opened = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The heap budget of loaded dictionaries, in bytes.
+     */
+    private final long heapBudget;
+
+    // -----Constructor-----
+    /**
+     * Construct a manager without dictionaries.
+     *
+     * @param heapBudget input the heap budget of loaded dictionaries, in bytes
+     */
+    public DictionaryManager(final long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    // -----Object Method-----
+    /**
+     * Add a dictionary. A dictionary with the same name is replaced.
+     *
+     * @param name input the name of the dictionary
+     * @param file input the dictionary file, which may not exist yet
+     */
+    public void add(final String name, final File file) {
+        files.put(name, file.getAbsoluteFile());
+    }
+
+    /**
+     * Add every dictionary file in a directory. The name of a dictionary is its file name.
+     *
+     * @param directory input the directory
+     * @return the number of dictionaries found
+     */
+    public int addDirectory(final File directory) {
+        final File[] list = directory.listFiles();
+        if (list == null) {
+            return 0;
+        }
+        Arrays.sort(list);
+        int count = 0;
+        for (final File file : list) {
+            if (isDictionary(file)) {
+                add(file.getName(), file);
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the names of all dictionaries.
+     *
+     * @return the names, in the order they were added
+     */
+    public List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(files.keySet()));
+    }
+
+    /**
+     * Open a dictionary without loading it. It becomes the most recently used dictionary, which is never evicted. Its metrics are registered in JMX until it is evicted.
+     *
+     * @param name input the name of the dictionary
+     * @return the dictionary, which may not be loaded yet
+     * @throws IllegalArgumentException if there is no such dictionary
+     */
+    public Data open(final String name) {
+        Data data = opened.get(name);
+        if (data == null) {
+            final File file = files.get(name);
+            if (file == null) {
+                throw new IllegalArgumentException("No such dictionary: ".concat(name));
+            }
+            data = new Data(file.getPath());
+            opened.put(name, data);
+            data.getMetrics().register();
+        }
+        return data;
+    }
+
+    /**
+     * Get a loaded dictionary. It is loaded if it was not loaded, and then the dictionaries which were not used recently are evicted if the budget is exceeded.
+     *
+     * @param name input the name of the dictionary
+     * @param problems input a list where the problems found while loading are added
+     * @return the dictionary
+     * @throws IllegalArgumentException if there is no such dictionary
+     */
+    public Data get(final String name, final List<DataException> problems) {
+        final Data data = open(name);
+        if (!data.isLoaded()) {
+            problems.addAll(data.readData());
+            problems.addAll(evict());
+        }
+        return data;
+    }
+
+    /**
+     * Get the estimated heap size of all loaded dictionaries.
+     *
+     * @return bytes
+     */
+    public long getHeapEstimate() {
+        long bytes = 0;
+        for (final Data data : opened.values()) {
+            bytes += data.getHeapEstimate();
+        }
+        return bytes;
+    }
+
+    /**
+     * Evict the least recently used dictionaries until the loaded dictionaries fit the budget. The most recently used dictionary is always kept. The changes of an evicted dictionary are written into its file first, and it is kept if they cannot be written.
+     *
+     * @return the problems found while writing the evicted dictionaries
+     */
+    public List<DataException> evict() {
+        final ArrayList<DataException> problems = new ArrayList<>(0);
+        long bytes = getHeapEstimate();
+        final Iterator<Map.Entry<String, Data>> it = opened.entrySet().iterator();
+        int remaining = opened.size();
+        while (bytes > heapBudget && remaining > 1) {
+            final Data data = it.next().getValue();
+            --remaining;
+            if (!data.isLoaded()) {
+                // It is being loaded by the caller.
+                continue;
+            }
+            try {
+                data.compact();
+            } catch (final DataException ex) {
+                problems.add(ex);
+                continue;
+            }
+            bytes -= data.getHeapEstimate();
+            it.remove();
+            data.getMetrics().unregister();
+        }
+        return problems;
+    }
+
+    /**
+     * Find the tuple whose left string is equal to a string ignoring case in every dictionary.
+     *
+     * @param leftString input a left string
+     * @param problems input a list where the problems found while loading are added
+     * @return the tuples, in the order of the dictionaries
+     */
+    public List<Match> lookup(final String leftString, final List<DataException> problems) {
+        final ArrayList<Match> matches = new ArrayList<>();
+        for (final String name : names()) {
+            final DataView.Hit hit = get(name, problems).getView().lookup(leftString);
+            if (hit != null) {
+                matches.add(new Match(name, hit));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Search tuples whose left strings or right strings contain a string ignoring case in every dictionary.
+     *
+     * @param str input the string to search
+     * @param limit input the maximum number of tuples of each dictionary
+     * @param problems input a list where the problems found while loading are added
+     * @return the tuples, in the order of the dictionaries
+     */
+    public List<Match> search(final String str, final int limit, final List<DataException> problems) {
+        final ArrayList<Match> matches = new ArrayList<>();
+        for (final String name : names()) {
+            for (final DataView.Hit hit : get(name, problems).getView().search(str, null, limit)) {
+                matches.add(new Match(name, hit));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Get the files of all dictionaries.
+     *
+     * @return the files, in the order they were added
+     */
+    public List<File> files() {
+        return Collections.unmodifiableList(new ArrayList<>(files.values()));
+    }
+
+    /**
+     * Reload the loaded dictionaries whose files were modified by other programs.
+     *
+     * @return the problems found while reloading
+     */
+    public List<DataException> reloadModified() {
+        final ArrayList<DataException> problems = new ArrayList<>(0);
+        for (final Data data : opened.values()) {
+            try {
+                data.reloadIfModified();
+            } catch (final DataException ex) {
+                problems.add(ex);
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Write the changes of all loaded dictionaries into their files.
+     *
+     * @return the problems found while writing
+     */
+    public List<DataException> compact() {
+        final ArrayList<DataException> problems = new ArrayList<>(0);
+        for (final Data data : opened.values()) {
+            try {
+                data.compact();
+            } catch (final DataException ex) {
+                problems.add(ex);
+            }
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * An immutable tuple of the database. It has a left string and the history of its right strings, which are parsed only once. Its left string and right strings are folded once, so that sorting and matching never need to fold them again.
+ * <p>
+ * A compact entry keeps only its folded strings as String objects, which are used for matching. Its left string and right strings are a record in a {@link Utf8Arena}, which are decoded whenever they are used, and they are not stored at all if they are the same as the folded ones.
+ *
+ * @author Magic Len
+ */
+final class Entry {
+
+    // -----Class Constant-----
+    /**
+     * The separator of the history of right strings.
+     */
+    static final String HISTORY_SEPARATOR = "-->";
+    /**
+     * Compare entries by their folded left strings.
+     */
+    static final Comparator<Entry> ORDER = (a, b) -> a.folded.compareTo(b.folded);
+    /**
+     * The flag of a compact record which has the left string.
+     */
+    private static final int LEFT_STORED = 1;
+    /**
+     * The flag of a compact record which has the right strings.
+     */
+    private static final int REVISIONS_STORED = 2;
+
+    // -----Class Method-----
+    /**
+     * Fold a string so that strings which are equal ignoring case have the same folded string. The string is normalized with NFKC first, so that full-width Latin letters and compatibility CJK characters are folded to the same characters as their ordinary forms, and then it is upper-cased with the full Unicode case mapping.
+     *
+     * @param str input a string
+     * @return the folded string
+     */
+    static String fold(final String str) {
+        return Normalizer.normalize(str, Normalizer.Form.NFKC).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Parse a right string with its history, like "火龍戰士 --> 焰火龍".
+     *
+     * @param right input a right string
+     * @return the right strings, from the oldest one to the newest one
+     */
+    static String[] parseHistory(final String right) {
+        final ArrayList<String> revisions = new ArrayList<>(1);
+        int start = 0;
+        int end;
+        while ((end = right.indexOf(HISTORY_SEPARATOR, start)) >= 0) {
+            revisions.add(right.substring(start, end).trim());
+            start = end + HISTORY_SEPARATOR.length();
+        }
+        revisions.add(right.substring(start).trim());
+        return revisions.toArray(new String[revisions.size()]);
+    }
+
+    // -----Object Constant-----
+    /**
+     * The folded left string. It is the left string itself if folding doesn't change it.
+     */
+    final String folded;
+    /**
+     * All folded right strings joined by line feeds, so that a substring which is found in it cannot cross two right strings. It is the right string itself if there is only one and folding doesn't change it.
+     */
+    final String foldedRight;
+    /**
+     * The index of the newest folded right string in the joined folded right strings, so that it can be matched without a substring.
+     */
+    private final int currentStart;
+    /**
+     * The left string and the right strings from the oldest one to the newest one, or the arena chunk of the compact record, or null if the entry is compact and its strings are the same as its folded strings.
+     */
+    private final Object strings;
+    /**
+     * The offset of the compact record in its chunk.
+     */
+    private final int offset;
+
+    // -----Constructor-----
+    /**
+     * Construct an entry.
+     *
+     * @param left input the left string
+     * @param revisions input the right strings, from the oldest one to the newest one
+     */
+    Entry(final String left, final String... revisions) {
+        this(left, fold(left), revisions, fold(String.join("\n", revisions)));
+    }
+
+    /**
+     * Construct an entry whose strings were folded already.
+     *
+     * @param left input the left string
+     * @param folded input the folded left string
+     * @param revisions input the right strings, from the oldest one to the newest one
+     * @param foldedRight input all folded right strings joined by line feeds
+     */
+    Entry(final String left, final String folded, final String[] revisions, final String foldedRight) {
+        this.folded = folded.equals(left) ? left : folded;
+        this.foldedRight = revisions.length == 1 && foldedRight.equals(revisions[0]) ? revisions[0] : foldedRight;
+        this.currentStart = foldedRight.lastIndexOf('\n') + 1;
+        final String[] all = new String[revisions.length + 1];
+        all[0] = left;
+        System.arraycopy(revisions, 0, all, 1, revisions.length);
+        this.strings = all;
+        this.offset = 0;
+    }
+
+    /**
+     * Construct a compact entry.
+     *
+     * @param folded input the folded left string
+     * @param foldedRight input all folded right strings joined by line feeds
+     * @param currentStart input the index of the newest folded right string
+     * @param chunk input the arena chunk of the record, or null if there is no record
+     * @param offset input the offset of the record in the chunk
+     */
+    private Entry(final String folded, final String foldedRight, final int currentStart, final byte[] chunk, final int offset) {
+        this.folded = folded;
+        this.foldedRight = foldedRight;
+        this.currentStart = currentStart;
+        this.strings = chunk;
+        this.offset = offset;
+    }
+
+    // -----Object Method-----
+    /**
+     * Whether the strings of the entry are stored compactly.
+     *
+     * @return true if it is compact
+     */
+    boolean isCompact() {
+        return !(strings instanceof String[]);
+    }
+
+    /**
+     * Get a compact entry with the same strings. Its left string and right strings are appended to an arena unless they are the same as its folded strings.
+     *
+     * @param arena input the arena
+     * @return the compact entry, or this entry if it is compact already
+     */
+    Entry compact(final Utf8Arena arena) {
+        if (isCompact()) {
+            return this;
+        }
+        final String[] all = (String[]) strings;
+        final boolean leftStored = all[0] != folded;
+        final boolean revisionsStored = !sameAsFoldedRight(all);
+        if (!leftStored && !revisionsStored) {
+            return new Entry(folded, foldedRight, currentStart, null, 0);
+        }
+        final byte[][] encoded = new byte[all.length][];
+        int length = 1;
+        for (int i = leftStored ? 0 : 1; i < (revisionsStored ? all.length : 1); ++i) {
+            encoded[i] = all[i].getBytes(StandardCharsets.UTF_8);
+            length += Utf8Arena.sizeOf(encoded[i]);
+        }
+        final byte[] record = new byte[length];
+        record[0] = (byte) ((leftStored ? LEFT_STORED : 0) | (revisionsStored ? REVISIONS_STORED : 0));
+        int p = 1;
+        for (final byte[] bytes : encoded) {
+            if (bytes != null) {
+                p = Utf8Arena.write(record, p, bytes);
+            }
+        }
+        final int recordOffset = arena.append(record, length);
+        return new Entry(folded, foldedRight, currentStart, arena.chunk(), recordOffset);
+    }
+
+    /**
+     * Whether the right strings joined by line feeds are the folded right strings, so that a compact entry can get them from the folded right strings.
+     *
+     * @param all input the left string and the right strings
+     * @return true if they are the same
+     */
+    private boolean sameAsFoldedRight(final String[] all) {
+        int p = 0;
+        for (int i = 1; i < all.length; ++i) {
+            final String revision = all[i];
+            if (!foldedRight.startsWith(revision, p)) {
+                return false;
+            }
+            p += revision.length() + 1;
+        }
+        return p - 1 == foldedRight.length();
+    }
+
+    /**
+     * Get the flags of the compact record.
+     *
+     * @return the flags, or 0 if there is no record
+     */
+    private int flags() {
+        return strings == null ? 0 : ((byte[]) strings)[offset];
+    }
+
+    /**
+     * Get the left string.
+     *
+     * @return the left string
+     */
+    String left() {
+        if (strings instanceof String[]) {
+            return ((String[]) strings)[0];
+        }
+        if ((flags() & LEFT_STORED) == 0) {
+            return folded;
+        }
+        return Utf8Arena.read((byte[]) strings, offset + 1);
+    }
+
+    /**
+     * Get the newest right string.
+     *
+     * @return the right string
+     */
+    String current() {
+        if (strings instanceof String[]) {
+            final String[] all = (String[]) strings;
+            return all[all.length - 1];
+        }
+        if ((flags() & REVISIONS_STORED) == 0) {
+            return foldedCurrent();
+        }
+        return revision(revisionCount() - 1);
+    }
+
+    /**
+     * Get the number of right strings in the history.
+     *
+     * @return the number of right strings
+     */
+    int revisionCount() {
+        if (strings instanceof String[]) {
+            return ((String[]) strings).length - 1;
+        }
+        if (currentStart == 0) {
+            return 1;
+        }
+        // Right strings never contain line feeds, so the folded ones do not either.
+        int count = 1;
+        for (int i = foldedRight.indexOf('\n'); i >= 0; i = foldedRight.indexOf('\n', i + 1)) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Get a right string in the history.
+     *
+     * @param index input the index of the right string, where 0 is the oldest one
+     * @return the right string
+     */
+    String revision(final int index) {
+        if (strings instanceof String[]) {
+            return ((String[]) strings)[index + 1];
+        }
+        final int flags = flags();
+        if ((flags & REVISIONS_STORED) == 0) {
+            int start = 0;
+            for (int i = 0; i < index; ++i) {
+                start = foldedRight.indexOf('\n', start) + 1;
+            }
+            final int end = foldedRight.indexOf('\n', start);
+            return end < 0 ? (start == 0 ? foldedRight : foldedRight.substring(start)) : foldedRight.substring(start, end);
+        }
+        final byte[] chunk = (byte[]) strings;
+        int p = offset + 1;
+        if ((flags & LEFT_STORED) != 0) {
+            p = Utf8Arena.skip(chunk, p);
+        }
+        for (int i = 0; i < index; ++i) {
+            p = Utf8Arena.skip(chunk, p);
+        }
+        return Utf8Arena.read(chunk, p);
+    }
+
+    /**
+     * Render the history of right strings, like "火龍戰士 --> 焰火龍".
+     *
+     * @return the history
+     */
+    String history() {
+        return String.join(" ".concat(HISTORY_SEPARATOR).concat(" "), revisions());
+    }
+
+    /**
+     * Get all right strings.
+     *
+     * @return the right strings, from the oldest one to the newest one
+     */
+    String[] revisions() {
+        if (strings instanceof String[]) {
+            final String[] all = (String[]) strings;
+            return Arrays.copyOfRange(all, 1, all.length);
+        }
+        final String[] revisions = new String[revisionCount()];
+        for (int i = 0; i < revisions.length; ++i) {
+            revisions[i] = revision(i);
+        }
+        return revisions;
+    }
+
+    /**
+     * Get the newest folded right string.
+     *
+     * @return the folded right string
+     */
+    String foldedCurrent() {
+        return currentStart == 0 ? foldedRight : foldedRight.substring(currentStart);
+    }
+
+    /**
+     * Get the length of the newest folded right string.
+     *
+     * @return the length
+     */
+    int foldedCurrentLength() {
+        return foldedRight.length() - currentStart;
+    }
+
+    /**
+     * Whether the newest folded right string contains a folded string.
+     *
+     * @param str input a folded string
+     * @return true if it contains the string
+     */
+    boolean currentContains(final String str) {
+        return foldedRight.indexOf(str, currentStart) >= 0;
+    }
+
+    /**
+     * Get the older folded right strings joined by line feeds.
+     *
+     * @return the folded right strings, or an empty string if there is only one right string
+     */
+    String foldedOlder() {
+        return currentStart == 0 ? "" : foldedRight.substring(0, currentStart - 1);
+    }
+
+    /**
+     * Whether the older folded right strings contain a folded string.
+     *
+     * @param str input a folded string
+     * @return true if one of them contains the string
+     */
+    boolean olderContains(final String str) {
+        if (currentStart == 0) {
+            return false;
+        }
+        // The first occurrence is the only one which may end before the newest right string.
+        final int index = foldedRight.indexOf(str);
+        return index >= 0 && index + str.length() < currentStart;
+    }
+
+    /**
+     * Get the older folded right strings.
+     *
+     * @return the folded right strings, from the oldest one to the second newest one
+     */
+    String[] foldedOlderRevisions() {
+        if (currentStart == 0) {
+            return new String[0];
+        }
+        return foldedRight.substring(0, currentStart - 1).split("\n", -1);
+    }
+
+    /**
+     * Estimate the heap size of the entry with all its strings.
+     *
+     * @return bytes
+     */
+    long heapBytes() {
+        // The entry and its folded strings. A String object costs about 40 bytes with its Latin-1 or UTF-16 array.
+        long bytes = 32 + 40 + folded.length() * 2;
+        if (strings instanceof String[]) {
+            final String[] all = (String[]) strings;
+            bytes += 16 + 4 * all.length;
+            for (int i = 0; i < all.length; ++i) {
+                if (all[i] != folded && all[i] != foldedRight) {
+                    bytes += 40 + all[i].length() * 2;
+                }
+            }
+            if (all.length != 2 || all[1] != foldedRight) {
+                bytes += 40 + foldedRight.length() * 2;
+            }
+        } else {
+            bytes += 40 + foldedRight.length() * 2;
+            if (strings != null) {
+                // The record in the arena.
+                final byte[] chunk = (byte[]) strings;
+                final int flags = flags();
+                int p = offset + 1;
+                if ((flags & LEFT_STORED) != 0) {
+                    p = Utf8Arena.skip(chunk, p);
+                }
+                if ((flags & REVISIONS_STORED) != 0) {
+                    for (int i = revisionCount(); i > 0; --i) {
+                        p = Utf8Arena.skip(chunk, p);
+                    }
+                }
+                bytes += p - offset;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether another entry has the same left string and the same history of right strings.
+     *
+     * @param other input another entry
+     * @return true if they are the same
+     */
+    boolean sameAs(final Entry other) {
+        return this == other || left().equals(other.left()) && Arrays.equals(revisions(), other.revisions());
+    }
+
+    /**
+     * Append new right strings to the history.
+     *
+     * @param newRevisions input the new right strings, from the oldest one to the newest one
+     * @return a new entry with the appended history
+     */
+    Entry revise(final String... newRevisions) {
+        if (newRevisions.length == 0) {
+            return this;
+        }
+        final String[] revisions = revisions();
+        final String[] appended = Arrays.copyOf(revisions, revisions.length + newRevisions.length);
+        System.arraycopy(newRevisions, 0, appended, revisions.length, newRevisions.length);
+        return new Entry(left(), folded, appended, fold(String.join("\n", appended)));
+    }
+
+    /**
+     * Append the history of a newer entry with the same left string to the history.
+     *
+     * @param newer input the newer entry
+     * @return a new entry with the appended history
+     */
+    Entry revise(final Entry newer) {
+        return revise(newer.revisions());
+    }
+}
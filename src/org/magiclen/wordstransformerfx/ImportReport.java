@@ -0,0 +1,93 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The report of a bulk import.
+ *
+ * @author Magic Len
+ */
+public final class ImportReport {
+
+    // -----Object Constant-----
+    private final int rows, added, revised, unchanged;
+    private final List<DataException> problems;
+
+    // -----Constructor-----
+    ImportReport(final int rows, final int added, final int revised, final int unchanged, final List<DataException> problems) {
+        this.rows = rows;
+        this.added = added;
+        this.revised = revised;
+        this.unchanged = unchanged;
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the number of rows read from the file, including the skipped ones.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of tuples whose left strings did not exist.
+     *
+     * @return the number of tuples
+     */
+    public int getAdded() {
+        return added;
+    }
+
+    /**
+     * Get the number of existing tuples which got new right strings.
+     *
+     * @return the number of tuples
+     */
+    public int getRevised() {
+        return revised;
+    }
+
+    /**
+     * Get the number of existing tuples which already had the imported right strings.
+     *
+     * @return the number of tuples
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Get the problems of the skipped rows, and the problem which stopped reading the file if there is any. The other rows are still imported.
+     *
+     * @return the problems
+     */
+    public List<DataException> getProblems() {
+        return problems;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows were read. %d tuples were added, %d were revised and %d were unchanged. %d problems were found.", rows, added, revised, unchanged, problems.size());
+    }
+}
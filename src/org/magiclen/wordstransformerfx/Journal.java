@@ -0,0 +1,245 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * The append-only journal of a database file. Every change of the database is appended here as a record, and the journal is replayed over the database file when the database is read.
+ *
+ * The structure of the journal is like this:
+ *
+ * <pre>
+ * &#64; 3
+ * + Fire Drake = 焰火龍
+ * - drake claws
+ * </pre>
+ *
+ * where '@' is the generation of the database file which the records are based on, '+' adds a tuple (or a new history of an existing tuple) and '-' removes a tuple. The records are included in every database file of a later generation, so they are never replayed over it again, even if the journal was not removed after the database file was written.
+ *
+ * @author Magic Len
+ */
+final class Journal {
+
+    // -----Class Constant-----
+    /**
+     * The extension of journal files.
+     */
+    static final String EXTENSION = ".journal";
+
+    // -----Class Interface-----
+    /**
+     * The handler of replayed records.
+     */
+    interface Handler {
+
+        /**
+         * Handle an adding record.
+         *
+         * @param left the left string
+         * @param right the right string
+         */
+        void add(String left, String right);
+
+        /**
+         * Handle a deleting record.
+         *
+         * @param left the left string
+         */
+        void delete(String left);
+    }
+
+    // -----Object Constant-----
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    // -----Object Variable-----
+    /**
+     * The number of records in the journal file.
+     */
+    private int records;
+    /**
+     * The generation of the database file which new records are based on.
+     */
+    private long generation;
+    /**
+     * Whether the records in the journal file are included in the database file already, so that the next record starts a new journal file.
+     */
+    private boolean included;
+
+    // -----Constructor-----
+    /**
+     * Construct the journal of a database file.
+     *
+     * @param dataPath input the absolute data file path
+     */
+    Journal(final String dataPath) {
+        file = new File(dataPath.concat(EXTENSION));
+    }
+
+    /**
+     * Get the number of records in the journal file.
+     *
+     * @return the number of records
+     */
+    int size() {
+        return records;
+    }
+
+    /**
+     * Get the generation which new records are based on. The next database file must have a later generation.
+     *
+     * @return the generation
+     */
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Append an adding record.
+     *
+     * @param left input the left string
+     * @param right input the right string
+     * @throws IOException if the journal cannot be written
+     */
+    void appendAdd(final String left, final String right) throws IOException {
+        append("+ ".concat(left).concat(" = ").concat(right));
+    }
+
+    /**
+     * Append a deleting record.
+     *
+     * @param left input the left string
+     * @throws IOException if the journal cannot be written
+     */
+    void appendDelete(final String left) throws IOException {
+        append("- ".concat(left));
+    }
+
+    private void append(final String record) throws IOException {
+        final boolean start = included || !file.exists();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, !start), "utf8")) {
+            if (start) {
+                writer.write("@ ".concat(String.valueOf(generation)));
+                writer.write('\n');
+                included = false;
+            }
+            writer.write(record);
+            writer.write('\n');
+        }
+        ++records;
+    }
+
+    /**
+     * Replay all records of the journal file over a database file. If the journal is based on an older generation, its records are included in the database file already, and they are skipped.
+     *
+     * @param dataGeneration input the generation of the database file
+     * @param handler input a handler to apply the records
+     * @throws IOException if the journal cannot be read or has something wrong
+     */
+    void replay(final long dataGeneration, final Handler handler) throws IOException {
+        records = 0;
+        generation = dataGeneration;
+        included = false;
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "utf8"))) {
+            String line;
+            boolean first = true;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().equals("")) {
+                    continue;
+                }
+                if (line.length() < 2 || line.charAt(1) != ' ') {
+                    throw new IOException("Broken journal record: ".concat(line));
+                }
+                final String record = line.substring(2);
+                if (line.charAt(0) == '@') {
+                    // A journal without the generation is based on a database file without the generation, which is 0.
+                    if (!first) {
+                        throw new IOException("Broken journal record: ".concat(line));
+                    }
+                    first = false;
+                    final long journalGeneration;
+                    try {
+                        journalGeneration = Long.parseLong(record.trim());
+                    } catch (final NumberFormatException e) {
+                        throw new IOException("Broken journal record: ".concat(line), e);
+                    }
+                    if (journalGeneration < dataGeneration) {
+                        included = true;
+                        return;
+                    }
+                    // The database file may have lost its generation, e.g. it was saved by a text editor. The next one must still be later than the journal.
+                    generation = journalGeneration;
+                    continue;
+                }
+                first = false;
+                switch (line.charAt(0)) {
+                    case '+':
+                        final int equal = record.indexOf('=');
+                        if (equal < 0) {
+                            throw new IOException("Broken journal record: ".concat(line));
+                        }
+                        handler.add(record.substring(0, equal).trim(), record.substring(equal + 1).trim());
+                        break;
+                    case '-':
+                        handler.delete(record.trim());
+                        break;
+                    default:
+                        throw new IOException("Broken journal record: ".concat(line));
+                }
+                ++records;
+            }
+        }
+    }
+
+    /**
+     * Mark all records as included in a database file which was just written, so that they are never replayed over it. The next record starts a new journal based on it.
+     *
+     * @param dataGeneration input the generation of the written database file
+     */
+    void include(final long dataGeneration) {
+        generation = dataGeneration;
+        included = true;
+        records = 0;
+    }
+
+    /**
+     * Remove all records. It should be called after the database file is written.
+     *
+     * @throws IOException if the journal cannot be removed
+     */
+    void clear() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot remove the journal: ".concat(file.getAbsolutePath()));
+        }
+        included = false;
+        records = 0;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, like HdrHistogram. Every power of two is divided into 32 linear buckets, so that a recorded latency is kept with about 3% precision in a fixed size, no matter how many latencies are recorded. It can be recorded and read by many threads at the same time without locks.
+ *
+ * @author Magic Len
+ */
+final class LatencyHistogram {
+
+    // -----Class Constant-----
+    /**
+     * The number of bits of the linear buckets in every power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * The largest power of two which can be recorded. Longer latencies (about 18 minutes) are recorded as the largest one.
+     */
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    // -----Class Method-----
+    /**
+     * Get the index of the bucket of a value.
+     *
+     * @param value input a non-negative value
+     * @return the index
+     */
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Get the largest value in a bucket.
+     *
+     * @param bucket input the index of the bucket
+     * @return the value
+     */
+    private static long highestOf(final int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKET_COUNT - 1;
+        final long lowest = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // -----Object Constant-----
+    private final AtomicLongArray buckets = new AtomicLongArray(bucketOf(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // -----Object Method-----
+    /**
+     * Record a latency.
+     *
+     * @param nanos input the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        final long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Retry.
+        }
+    }
+
+    /**
+     * Get the number of recorded latencies.
+     *
+     * @return the number
+     */
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Get the mean of recorded latencies.
+     *
+     * @return nanoseconds, or 0 if nothing was recorded
+     */
+    long mean() {
+        final long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Get the longest recorded latency.
+     *
+     * @return nanoseconds
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Get a percentile of recorded latencies. The latency is rounded up to the largest value of its bucket.
+     *
+     * @param percentile input the percentile, from 0 to 100
+     * @return nanoseconds, or 0 if nothing was recorded
+     */
+    long percentile(final double percentile) {
+        final int length = buckets.length();
+        final long[] counts = new long[length];
+        long total = 0;
+        for (int i = 0; i < length; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget all recorded latencies.
+     */
+    void reset() {
+        for (int i = buckets.length() - 1; i >= 0; --i) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,609 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local HTTP service of data, so that many programs can use the same database at the same time. It only listens on the loopback address, and every response is a JSON object.
+ * <ul>
+ * <li>GET /lookup?key=... finds the tuple whose left string is equal to the key.</li>
+ * <li>GET /search?q=...&amp;limit=... finds the tuples containing the query. Its "next" field is the cursor of the next page, or null.</li>
+ * <li>GET /next?q=...&amp;after=...&amp;limit=... finds the next page after a cursor.</li>
+ * <li>GET /complete?prefix=...&amp;limit=... finds the left strings which start with the prefix.</li>
+ * <li>GET /reverse?value=... finds the tuples whose newest or older right strings are equal to the value.</li>
+ * <li>GET /metrics reports the size of the data and the latencies of operations.</li>
+ * <li>POST /transform transforms the UTF-8 request body.</li>
+ * <li>POST /add with the form fields "left" and "right", and POST /delete with the form field "left", change the data.</li>
+ * </ul>
+ * It only answers requests whose Host is the loopback address and port of this server, and whose Origin, if any, is this server, so that web pages in a browser cannot use it directly or by DNS rebinding. Every POST request must have the header {@value #REQUEST_HEADER}, which a web page cannot send to another origin without a CORS preflight, and the preflight is never allowed.
+ * <p>
+ * Reading requests are served concurrently from the immutable view of data, so they never wait for changes. Changes are executed one by one by a single thread, which is the only thread that touches the data. Reverse lookups use the reverse index of the data, so they are executed by that thread, too.
+ *
+ * @author Magic Len
+ */
+public final class LookupServer {
+
+    // -----Class Constant-----
+    /**
+     * The default port.
+     */
+    public static final int DEFAULT_PORT = 8417;
+    /**
+     * The header which must be in every POST request. Its value is not checked.
+     */
+    public static final String REQUEST_HEADER = "X-Words-Transformer";
+    /**
+     * The host names of the loopback address which can be in the Host header.
+     */
+    private static final List<String> LOOPBACK_HOSTS = Arrays.asList("localhost", "127.0.0.1", "[::1]");
+    /**
+     * The default number of tuples in a page.
+     */
+    private static final int DEFAULT_LIMIT = 20;
+    /**
+     * The maximum number of tuples in a page.
+     */
+    private static final int MAX_LIMIT = 1000;
+    /**
+     * The maximum size of a request body, in bytes.
+     */
+    private static final int MAX_BODY_SIZE = 16 << 20;
+
+    // -----Class Class-----
+    /**
+     * An error which is responded with a status code.
+     */
+    private static final class HttpError extends Exception {
+
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private HttpError(final int status, final String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * A handler of one endpoint.
+     */
+    private interface Endpoint {
+
+        /**
+         * Handle a request.
+         *
+         * @param exchange input the request
+         * @return the JSON object of the response
+         */
+        String handle(HttpExchange exchange) throws HttpError, IOException;
+    }
+
+    // -----Class Method-----
+    /**
+     * Quote a string as a JSON string.
+     *
+     * @param str input a string, or null
+     * @return the JSON string, or "null"
+     */
+    static String quote(final String str) {
+        if (str == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(str.length() + 2);
+        sb.append('"');
+        final int length = str.length();
+        for (int i = 0; i < length; ++i) {
+            final char c = str.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Parse a query string or an URL-encoded form.
+     *
+     * @param query input the encoded string, or null
+     * @return the parameters
+     */
+    private static Map<String, String> parseParameters(final String query) {
+        final HashMap<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        try {
+            for (final String pair : query.split("&")) {
+                final int e = pair.indexOf('=');
+                if (e < 0) {
+                    parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    parameters.put(URLDecoder.decode(pair.substring(0, e), "UTF-8"), URLDecoder.decode(pair.substring(e + 1), "UTF-8"));
+                }
+            }
+        } catch (final UnsupportedEncodingException | IllegalArgumentException ex) {
+            // Keep the parameters which can be decoded.
+        }
+        return parameters;
+    }
+
+    /**
+     * Read the whole request body.
+     *
+     * @param exchange input the request
+     * @return the body
+     */
+    private static byte[] readBody(final HttpExchange exchange) throws HttpError, IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int c;
+            while ((c = in.read(buffer)) >= 0) {
+                if (body.size() + c > MAX_BODY_SIZE) {
+                    throw new HttpError(413, "The request body is too large.");
+                }
+                body.write(buffer, 0, c);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Get a required parameter.
+     */
+    private static String require(final Map<String, String> parameters, final String name) throws HttpError {
+        final String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new HttpError(400, String.format("The parameter '%s' is required.", name));
+        }
+        return value;
+    }
+
+    /**
+     * Get the limit of a page.
+     */
+    private static int limit(final Map<String, String> parameters) throws HttpError {
+        final String value = parameters.get("limit");
+        if (value == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            final int limit = Integer.parseInt(value);
+            if (limit <= 0) {
+                throw new NumberFormatException();
+            }
+            return Math.min(limit, MAX_LIMIT);
+        } catch (final NumberFormatException ex) {
+            throw new HttpError(400, "The parameter 'limit' must be a positive integer.");
+        }
+    }
+
+    /**
+     * Make sure the method of a request.
+     */
+    private static void requireMethod(final HttpExchange exchange, final String method) throws HttpError {
+        if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+            throw new HttpError(405, String.format("Use %s for this endpoint.", method));
+        }
+        if (method.equals("POST") && exchange.getRequestHeaders().getFirst(REQUEST_HEADER) == null) {
+            throw new HttpError(403, String.format("Add the header %s to POST requests.", REQUEST_HEADER));
+        }
+    }
+
+    /**
+     * Render a tuple as a JSON object.
+     */
+    private static void appendHit(final StringBuilder sb, final DataView.Hit hit) {
+        sb.append("{\"left\":").append(quote(hit.getLeft()));
+        sb.append(",\"right\":").append(quote(hit.getRight()));
+        sb.append(",\"history\":").append(quote(hit.getAllRight()));
+        sb.append(",\"matched\":").append(hit.isLeft() ? "\"left\"" : hit.isHistory() ? "\"history\"" : "\"right\"");
+        sb.append('}');
+    }
+
+    // -----Object Constant-----
+    /**
+     * The data which are served.
+     */
+    private final Data data;
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+    /**
+     * The executor of reading requests.
+     */
+    private final ExecutorService readers;
+    /**
+     * The single thread which changes the data.
+     */
+    private final ExecutorService writer;
+
+    // -----Object Variable-----
+    /**
+     * The watcher of the data file, or null if it cannot be watched.
+     */
+    private DataWatcher watcher;
+
+    // -----Constructor-----
+    /**
+     * Construct a server on the loopback address. The data must be loaded already, and they must not be changed by other threads while the server is running.
+     *
+     * @param data input the data
+     * @param port input the port, or 0 to use any free port
+     * @param threads input the number of threads serving requests
+     * @throws IOException if the port cannot be bound
+     */
+    public LookupServer(final Data data, final int port, final int threads) throws IOException {
+        this.data = data;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        readers = Executors.newFixedThreadPool(threads, r -> {
+            final Thread thread = new Thread(r, "Words Lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "Words Data");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(readers);
+        server.createContext("/lookup", endpoint(this::lookup));
+        server.createContext("/search", endpoint(this::search));
+        server.createContext("/next", endpoint(this::search));
+        server.createContext("/complete", endpoint(this::complete));
+        server.createContext("/reverse", endpoint(this::reverse));
+        server.createContext("/metrics", endpoint(this::metrics));
+        server.createContext("/transform", endpoint(this::transform));
+        server.createContext("/add", endpoint(this::add));
+        server.createContext("/delete", endpoint(this::delete));
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the port which the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Start serving requests. The data file is watched, and the changes made by other programs are reloaded by the writing thread. The metrics of the data are registered in JMX.
+     */
+    public void start() {
+        data.getMetrics().register();
+        try {
+            watcher = new DataWatcher(Collections.singletonList(new File(data.getPath())), () -> {
+                try {
+                    writer.execute(() -> {
+                        try {
+                            data.reloadIfModified();
+                        } catch (final DataException ex) {
+                            // Keep serving the current data. The file is read again when it is modified next time.
+                        }
+                    });
+                } catch (final RejectedExecutionException ex) {
+                    // Stopping.
+                }
+            });
+        } catch (final IOException ex) {
+            // The data can still be served without reloading.
+        }
+        server.start();
+    }
+
+    /**
+     * Stop serving requests and compact the data.
+     *
+     * @throws DataException if the data cannot be compacted
+     */
+    public void stop() throws DataException {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (final IOException ex) {
+                // Nothing to do.
+            }
+        }
+        server.stop(1);
+        data.getMetrics().unregister();
+        readers.shutdown();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        data.compact();
+    }
+
+    /**
+     * Make sure that a request is sent to this server by a local program, not by a web page of another origin. The Host header must be the loopback address with the port of this server, and the Origin header must be this server if it exists.
+     */
+    private void requireLocal(final HttpExchange exchange) throws HttpError {
+        final String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLocalAuthority(host)) {
+            throw new HttpError(403, "Only requests to the loopback address are served.");
+        }
+        final String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !(origin.regionMatches(true, 0, "http://", 0, 7) && isLocalAuthority(origin.substring(7)))) {
+            throw new HttpError(403, "Requests from other origins are not served.");
+        }
+    }
+
+    /**
+     * Whether an authority, like "localhost:8417", is the loopback address with the port of this server.
+     *
+     * @param authority input the authority
+     * @return true if it is this server
+     */
+    private boolean isLocalAuthority(final String authority) {
+        final int colon = authority.lastIndexOf(':');
+        final String host;
+        final String port;
+        if (colon < 0 || authority.endsWith("]")) {
+            host = authority;
+            port = "80";
+        } else {
+            host = authority.substring(0, colon);
+            port = authority.substring(colon + 1);
+        }
+        return LOOPBACK_HOSTS.contains(host.toLowerCase(Locale.ROOT)) && port.equals(String.valueOf(getPort()));
+    }
+
+    /**
+     * Wrap an endpoint as an HTTP handler.
+     *
+     * @param endpoint input the endpoint
+     * @return the HTTP handler
+     */
+    private HttpHandler endpoint(final Endpoint endpoint) {
+        return exchange -> {
+            int status = 200;
+            String json;
+            try {
+                requireLocal(exchange);
+                json = endpoint.handle(exchange);
+            } catch (final HttpError ex) {
+                status = ex.status;
+                json = "{\"error\":".concat(quote(ex.getMessage())).concat("}");
+            } catch (final IOException | RuntimeException ex) {
+                status = 500;
+                json = "{\"error\":".concat(quote(ex.toString())).concat("}");
+            }
+            final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+    }
+
+    /**
+     * Change the data in the single writing thread.
+     *
+     * @param change input the change
+     * @return the result of the change
+     */
+    private <T> T write(final Callable<T> change) throws HttpError {
+        return execute(() -> {
+            final T result = change.call();
+            if (data.shouldCompact()) {
+                try {
+                    data.compact();
+                } catch (final DataException ex) {
+                    // The change is still in the journal. Compact it next time.
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Use the data in the single writing thread.
+     *
+     * @param operation input the operation
+     * @return the result of the operation
+     */
+    private <T> T execute(final Callable<T> operation) throws HttpError {
+        try {
+            return writer.submit(operation).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "The server is stopping.");
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof DataException) {
+                final DataException de = (DataException) cause;
+                final String detail = de.getDetail();
+                throw new HttpError(400, detail == null ? de.getMessage() : de.getMessage().concat("\n").concat(detail));
+            }
+            throw new HttpError(500, cause.toString());
+        }
+    }
+
+    private String lookup(final HttpExchange exchange) throws HttpError {
+        requireMethod(exchange, "GET");
+        final Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        final DataView view = data.getView();
+        final DataView.Hit hit = view.lookup(require(parameters, "key"));
+        if (hit == null) {
+            throw new HttpError(404, "Not found.");
+        }
+        final StringBuilder sb = new StringBuilder("{\"version\":").append(view.getVersion()).append(",\"result\":");
+        appendHit(sb, hit);
+        return sb.append('}').toString();
+    }
+
+    private String reverse(final HttpExchange exchange) throws HttpError {
+        requireMethod(exchange, "GET");
+        final Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        final String value = require(parameters, "value");
+        final List<DataView.Hit> hits = execute(() -> data.lookupRight(value));
+        if (hits.isEmpty()) {
+            throw new HttpError(404, "Not found.");
+        }
+        final StringBuilder sb = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < hits.size(); ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendHit(sb, hits.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String search(final HttpExchange exchange) throws HttpError {
+        requireMethod(exchange, "GET");
+        final Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        final String query = require(parameters, "q");
+        final int limit = limit(parameters);
+        final DataView view = data.getView();
+        final DataEvent event = data.getMetrics().start(DataMetrics.Operation.SEARCH);
+        final List<DataView.Hit> hits;
+        try {
+            hits = view.search(query, parameters.get("after"), limit);
+        } finally {
+            data.getMetrics().stop(event);
+        }
+        final StringBuilder sb = new StringBuilder("{\"version\":").append(view.getVersion()).append(",\"results\":[");
+        for (int i = 0; i < hits.size(); ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendHit(sb, hits.get(i));
+        }
+        sb.append("],\"next\":").append(hits.size() < limit ? "null" : quote(hits.get(hits.size() - 1).getLeft()));
+        return sb.append('}').toString();
+    }
+
+    private String metrics(final HttpExchange exchange) throws HttpError {
+        requireMethod(exchange, "GET");
+        final DataMetrics metrics = data.getMetrics();
+        final StringBuilder sb = new StringBuilder("{\"entries\":").append(metrics.getEntryCount())
+                .append(",\"heapEstimate\":").append(metrics.getHeapEstimate())
+                .append(",\"journalSize\":").append(metrics.getJournalSize())
+                .append(",\"operations\":{");
+        for (final DataMetrics.Operation operation : DataMetrics.Operation.values()) {
+            final OperationStatistics statistics = metrics.getStatistics(operation);
+            if (operation.ordinal() > 0) {
+                sb.append(',');
+            }
+            sb.append(quote(operation.name().toLowerCase(Locale.ROOT))).append(":{\"count\":").append(statistics.getCount())
+                    .append(",\"meanMillis\":").append(statistics.getMeanMillis())
+                    .append(",\"p50Millis\":").append(statistics.getP50Millis())
+                    .append(",\"p90Millis\":").append(statistics.getP90Millis())
+                    .append(",\"p99Millis\":").append(statistics.getP99Millis())
+                    .append(",\"maxMillis\":").append(statistics.getMaxMillis())
+                    .append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    private String complete(final HttpExchange exchange) throws HttpError {
+        requireMethod(exchange, "GET");
+        final Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+        final DataView view = data.getView();
+        final List<String> completions = view.complete(require(parameters, "prefix"), limit(parameters));
+        final StringBuilder sb = new StringBuilder("{\"version\":").append(view.getVersion()).append(",\"results\":[");
+        for (int i = 0; i < completions.size(); ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(quote(completions.get(i)));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String transform(final HttpExchange exchange) throws HttpError, IOException {
+        requireMethod(exchange, "POST");
+        final byte[] body = readBody(exchange);
+        final DataView view = data.getView();
+        final StringWriter out = new StringWriter(body.length);
+        final long replacements = view.transform(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8), out);
+        return "{\"version\":".concat(String.valueOf(view.getVersion())).concat(",\"replacements\":").concat(String.valueOf(replacements)).concat(",\"text\":").concat(quote(out.toString())).concat("}");
+    }
+
+    private String add(final HttpExchange exchange) throws HttpError, IOException {
+        requireMethod(exchange, "POST");
+        final Map<String, String> parameters = parseParameters(new String(readBody(exchange), StandardCharsets.UTF_8));
+        final String left = require(parameters, "left");
+        final String right = require(parameters, "right");
+        final boolean changed = write(() -> data.add(left, right));
+        return "{\"changed\":".concat(String.valueOf(changed)).concat("}");
+    }
+
+    private String delete(final HttpExchange exchange) throws HttpError, IOException {
+        requireMethod(exchange, "POST");
+        final Map<String, String> parameters = parseParameters(new String(readBody(exchange), StandardCharsets.UTF_8));
+        final String left = require(parameters, "left");
+        final boolean deleted = write(() -> data.delete(left));
+        return "{\"deleted\":".concat(String.valueOf(deleted)).concat("}");
+    }
+}
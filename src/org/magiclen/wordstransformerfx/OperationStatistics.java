@@ -0,0 +1,83 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The statistics of an operation of data, such as searching. Latencies are in milliseconds.
+ *
+ * @author Magic Len
+ */
+public final class OperationStatistics {
+
+    // -----Object Constant-----
+    private final long count;
+    private final double meanMillis, p50Millis, p90Millis, p99Millis, maxMillis;
+
+    // -----Constructor-----
+    /**
+     * Construct statistics.
+     *
+     * @param count input the number of operations
+     * @param meanMillis input the mean latency
+     * @param p50Millis input the median latency
+     * @param p90Millis input the 90th percentile latency
+     * @param p99Millis input the 99th percentile latency
+     * @param maxMillis input the longest latency
+     */
+    @ConstructorProperties({"count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"})
+    public OperationStatistics(final long count, final double meanMillis, final double p50Millis, final double p90Millis, final double p99Millis, final double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    // -----Object Method-----
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d times, p50 %.2f ms, p99 %.2f ms, max %.2f ms", count, p50Millis, p99Millis, maxMillis);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A parallel transformer of files. Files are transformed concurrently, and a large file is split into segments on line boundaries which are transformed concurrently and written in order. All segments share one immutable {@link Transformer}.
+ *
+ * @author Magic Len
+ */
+final class ParallelTransformer {
+
+    // -----Class Constant-----
+    /**
+     * The minimum size of a segment, in characters.
+     */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    // -----Class Class-----
+    /**
+     * A transformed segment.
+     */
+    private static final class Segment {
+
+        /**
+         * The transformed text.
+         */
+        private final String text;
+        /**
+         * The number of replacements.
+         */
+        private final long replacements;
+
+        private Segment(final String text, final long replacements) {
+            this.text = text;
+            this.replacements = replacements;
+        }
+    }
+
+    // -----Class Method-----
+    /**
+     * Join a task and unwrap the IOException thrown by it.
+     */
+    private static <T> T join(final ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (final RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a path is a directory or inside it. Links are resolved, and the path doesn't have to exist.
+     *
+     * @param path input the path
+     * @param directory input the existing directory
+     * @return true if the path is the directory or inside it
+     */
+    static boolean isInside(final Path path, final Path directory) throws IOException {
+        // Resolve the existing part of the path, and append the rest which doesn't exist yet.
+        Path existing = path.toAbsolutePath().normalize();
+        Path rest = existing.getFileSystem().getPath("");
+        while (!Files.exists(existing)) {
+            final Path parent = existing.getParent();
+            if (parent == null) {
+                return false;
+            }
+            rest = existing.getFileName().resolve(rest);
+            existing = parent;
+        }
+        return existing.toRealPath().resolve(rest).normalize().startsWith(directory.toRealPath());
+    }
+
+    // -----Object Constant-----
+    /**
+     * The shared transformer.
+     */
+    private final Transformer transformer;
+    /**
+     * The pool to run tasks.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The maximum number of segments of a file being transformed at the same time. It bounds the memory used by a file.
+     */
+    private final int maxSegmentsInFlight;
+
+    // -----Constructor-----
+    /**
+     * Construct a parallel transformer.
+     *
+     * @param transformer input the shared transformer
+     * @param pool input the pool to run tasks
+     */
+    ParallelTransformer(final Transformer transformer, final ForkJoinPool pool) {
+        this.transformer = transformer;
+        this.pool = pool;
+        this.maxSegmentsInFlight = pool.getParallelism() * 2;
+    }
+
+    // -----Object Method-----
+    private <T> ForkJoinTask<T> fork(final Callable<T> callable) {
+        final ForkJoinTask<T> task = ForkJoinTask.adapt(callable);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.fork();
+        } else {
+            pool.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Transform all regular files in a directory, including its sub-directories. The transformed files are written to the same relative paths in the output directory, which must not be the input directory or inside it, because the input files would be truncated while they are being read.
+     *
+     * @param inputDirectory input the directory of UTF-8 text files
+     * @param outputDirectory input the directory to write the transformed files
+     * @return the number of replacements
+     * @throws IOException if a file cannot be transformed, or the output directory is in the input directory
+     */
+    long transformDirectory(final Path inputDirectory, final Path outputDirectory) throws IOException {
+        if (isInside(outputDirectory, inputDirectory)) {
+            throw new IOException("The output directory cannot be the input directory or inside it.");
+        }
+        final List<Path> files;
+        try (Stream<Path> stream = Files.walk(inputDirectory)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        final ArrayList<ForkJoinTask<Long>> tasks = new ArrayList<>(files.size());
+        for (final Path file : files) {
+            final Path output = outputDirectory.resolve(inputDirectory.relativize(file).toString());
+            tasks.add(fork(() -> transformFile(file, output)));
+        }
+        long replacements = 0;
+        for (final ForkJoinTask<Long> task : tasks) {
+            replacements += join(task);
+        }
+        return replacements;
+    }
+
+    /**
+     * Transform a file. If the file is large, its segments are transformed in parallel.
+     *
+     * @param input input a UTF-8 text file
+     * @param output input the file to write the transformed text
+     * @return the number of replacements
+     * @throws IOException if the file cannot be transformed
+     */
+    long transformFile(final Path input, final Path output) throws IOException {
+        final Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8); Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return transform(reader, writer);
+        }
+    }
+
+    /**
+     * Transform a stream. The stream is split into segments on line boundaries, and the transformed segments are written in order.
+     *
+     * @param in input a reader of the text
+     * @param out input a writer of the transformed text
+     * @return the number of replacements
+     * @throws IOException if the text cannot be read or written
+     */
+    long transform(final Reader in, final Writer out) throws IOException {
+        final ArrayDeque<ForkJoinTask<Segment>> inFlight = new ArrayDeque<>();
+        char[] buffer = new char[SEGMENT_SIZE];
+        int length = 0;
+        long replacements = 0;
+        while (true) {
+            final int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                if (length > 0) {
+                    inFlight.add(transformSegment(new String(buffer, 0, length)));
+                }
+                break;
+            }
+            length += read;
+            if (length < buffer.length) {
+                continue;
+            }
+            int lineEnd = length - 1;
+            while (lineEnd >= 0 && buffer[lineEnd] != '\n') {
+                --lineEnd;
+            }
+            if (lineEnd >= 0) {
+                final int segmentLength = lineEnd + 1;
+                inFlight.add(transformSegment(new String(buffer, 0, segmentLength)));
+                System.arraycopy(buffer, segmentLength, buffer, 0, length - segmentLength);
+                length -= segmentLength;
+            } else {
+                // A very long line. Keep it in the buffer until its end is read.
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while (inFlight.size() >= maxSegmentsInFlight) {
+                replacements += write(join(inFlight.poll()), out);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            replacements += write(join(inFlight.poll()), out);
+        }
+        out.flush();
+        return replacements;
+    }
+
+    private ForkJoinTask<Segment> transformSegment(final String text) {
+        return fork(() -> {
+            final StringWriter writer = new StringWriter(text.length());
+            final long replacements = transformer.transform(new StringReader(text), writer);
+            return new Segment(writer.toString(), replacements);
+        });
+    }
+
+    private long write(final Segment segment, final Writer out) throws IOException {
+        out.write(segment.text);
+        return segment.replacements;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The ranked result of a search. Tuples whose left strings are equal to the string come first, then the ones whose left strings start with it, contain it, the ones whose newest right strings contain it, and the ones whose older right strings contain it. If nothing contains the string, the tuples whose left strings are similar to it are the result.
+ * <p>
+ * Only the ranked indices are computed by searching. The strings of a tuple are read when the tuple is requested, from the version of data where the search was done, so a result can be paged by any thread and is never affected by later changes.
+ *
+ * @author Magic Len
+ */
+public final class SearchResult {
+
+    // -----Class Constant-----
+    /**
+     * The result of nothing.
+     */
+    static final SearchResult EMPTY = new SearchResult(DataView.EMPTY, new int[0], new int[Rank.values().length]);
+
+    // -----Class Class-----
+    /**
+     * How a tuple matches the string.
+     */
+    public enum Rank {
+        /**
+         * The left string is equal to the string.
+         */
+        EXACT,
+        /**
+         * The left string starts with the string.
+         */
+        PREFIX,
+        /**
+         * The left string contains the string.
+         */
+        LEFT,
+        /**
+         * The newest right string contains the string.
+         */
+        RIGHT,
+        /**
+         * An older right string contains the string, but the newest one doesn't.
+         */
+        HISTORY,
+        /**
+         * The left string is similar to the string.
+         */
+        SIMILAR
+    }
+
+    // -----Object Constant-----
+    /**
+     * The version of data where the search was done.
+     */
+    private final DataView view;
+    /**
+     * The ranked indices of the tuples in the version.
+     */
+    private final int[] positions;
+    /**
+     * The end of the positions of each rank.
+     */
+    private final int[] rankEnds;
+
+    // -----Constructor-----
+    /**
+     * Construct a result.
+     *
+     * @param view input the version of data where the search was done
+     * @param positions input the ranked indices of the tuples
+     * @param rankEnds input the end of the positions of each rank
+     */
+    SearchResult(final DataView view, final int[] positions, final int[] rankEnds) {
+        this.view = view;
+        this.positions = positions;
+        this.rankEnds = rankEnds;
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the number of matched tuples.
+     *
+     * @return the number of tuples
+     */
+    public int getTotal() {
+        return positions.length;
+    }
+
+    /**
+     * Get the version of data where the search was done.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return view.getVersion();
+    }
+
+    /**
+     * Get how a tuple matches the string.
+     *
+     * @param rank input the rank of the tuple, from 0
+     * @return how it matches
+     */
+    public Rank getRank(final int rank) {
+        if (rank < 0 || rank >= positions.length) {
+            throw new IndexOutOfBoundsException(String.valueOf(rank));
+        }
+        int i = 0;
+        while (rankEnds[i] <= rank) {
+            ++i;
+        }
+        return Rank.values()[i];
+    }
+
+    /**
+     * Get the number of tuples which match the string in a way.
+     *
+     * @param rank input the way
+     * @return the number of tuples
+     */
+    public int count(final Rank rank) {
+        final int i = rank.ordinal();
+        return rankEnds[i] - (i == 0 ? 0 : rankEnds[i - 1]);
+    }
+
+    public String getLeft(final int rank) {
+        return view.getLeft(positions[rank]);
+    }
+
+    public String getRight(final int rank) {
+        return view.getRight(positions[rank]);
+    }
+
+    public String getAllRight(final int rank) {
+        return view.getAllRight(positions[rank]);
+    }
+
+    /**
+     * Get the text to be copied of a tuple. It is the right string if the tuple is found by its left string, or the left string if it is found by a right string.
+     *
+     * @param rank input the rank of the tuple, from 0
+     * @return the text
+     */
+    public String getText(final int rank) {
+        final Rank r = getRank(rank);
+        return r == Rank.RIGHT || r == Rank.HISTORY ? getLeft(rank) : getRight(rank);
+    }
+
+    /**
+     * Get a page of the tuples, rendered like "Fire Drake = 火龍戰士 --> 焰火龍". The tuples are rendered when they are read.
+     *
+     * @param offset input the rank of the first tuple
+     * @param limit input the maximum number of tuples
+     * @return the page
+     */
+    public List<String> page(final int offset, final int limit) {
+        final int from = Math.max(0, Math.min(offset, positions.length));
+        final int to = (int) Math.min((long) from + limit, positions.length);
+        return new AbstractList<String>() {
+            @Override
+            public String get(final int index) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException(String.valueOf(index));
+                }
+                final int rank = from + index;
+                return getLeft(rank).concat(" = ").concat(getAllRight(rank));
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An n-gram index of folded strings. It maps every bigram and trigram to the entries whose indexed strings contain it, so that substring queries only have to check a few candidates.
+ * <p>
+ * The index is built from all entries at once. Every gram has a sorted array of the ordinals of its entries, which are their indices in the entries when the index was built, so a posting costs 4 bytes. The entries added after that are kept in small posting sets, and the removed ones are marked, until the index is built again. If too many entries are added, the index is dropped until it is built again.
+ *
+ * @author Magic Len
+ */
+final class SubstringIndex {
+
+    // -----Class Constant-----
+    /**
+     * The minimum length of a query which can be answered by this index.
+     */
+    static final int MIN_QUERY_LENGTH = 2;
+    /**
+     * The minimum length of a query which is answered by trigrams. Shorter queries are answered by bigrams, whose posting sets can hold a large part of the entries.
+     */
+    static final int SELECTIVE_QUERY_LENGTH = 3;
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final long[] NO_GRAMS = new long[0];
+    private static final int[] NO_ORDINALS = new int[0];
+    /**
+     * The number of added entries which always can be kept without building the index again.
+     */
+    private static final int MIN_ADDED_LIMIT = 4096;
+
+    // -----Class Class-----
+    /**
+     * The candidates of a query. The candidates from the built index are in the order of the entries when the index was built. They must be used before the index is changed.
+     */
+    static final class Candidates {
+
+        private final Entry[] base;
+        private final int[] ordinals;
+        private final int from;
+        private final int to;
+        private final BitSet removed;
+        private final Set<Entry> added;
+        /**
+         * All entries added after the index was built, sorted by their folded left strings.
+         */
+        private final List<Entry> addedOrder;
+        /**
+         * Whether the query is one n-gram, so every candidate contains it.
+         */
+        private final boolean exact;
+        /**
+         * The ordinal of the last candidate whose position was found.
+         */
+        private int lastOrdinal;
+        /**
+         * The number of removed entries before the last candidate whose position was found.
+         */
+        private int removedBefore;
+        /**
+         * The number of added entries before the last candidate whose position was found.
+         */
+        private int addedBefore;
+
+        private Candidates(final SubstringIndex index, final int from, final int to, final Set<Entry> added, final boolean exact) {
+            this.base = index.base;
+            this.ordinals = index.ordinals;
+            this.from = from;
+            this.to = to;
+            this.removed = index.removed;
+            this.added = added;
+            this.addedOrder = index.addedOrder;
+            this.exact = exact;
+        }
+
+        /**
+         * Get the number of candidates, including the removed ones.
+         *
+         * @return the number of candidates
+         */
+        int size() {
+            return to - from + added.size();
+        }
+
+        /**
+         * Get the number of candidates from the built index, including the removed ones.
+         *
+         * @return the number of candidates
+         */
+        int baseSize() {
+            return to - from;
+        }
+
+        /**
+         * Get a candidate from the built index.
+         *
+         * @param index input the index of the candidate, from 0 to {@link #baseSize()}
+         * @return the entry, or null if it has been removed
+         */
+        Entry baseEntry(final int index) {
+            final int ordinal = ordinals[from + index];
+            return removed.get(ordinal) ? null : base[ordinal];
+        }
+
+        /**
+         * Get the position of a candidate from the built index in all entries, which are the entries when the index was built without the removed ones, and with the added ones. It must be called in the order of the candidates, and the candidate must not have been removed.
+         *
+         * @param index input the index of the candidate, from 0 to {@link #baseSize()}
+         * @return the position
+         */
+        int position(final int index) {
+            final int ordinal = ordinals[from + index];
+            // Count the removed entries and the added entries before the candidate since the last one, so nothing is compared when there is no change.
+            for (int r = removed.nextSetBit(lastOrdinal); r >= 0 && r < ordinal; r = removed.nextSetBit(r + 1)) {
+                ++removedBefore;
+            }
+            lastOrdinal = ordinal;
+            final int addedSize = addedOrder.size();
+            if (addedBefore < addedSize) {
+                final Entry entry = base[ordinal];
+                while (addedBefore < addedSize && Entry.ORDER.compare(addedOrder.get(addedBefore), entry) < 0) {
+                    ++addedBefore;
+                }
+            }
+            return ordinal - removedBefore + addedBefore;
+        }
+
+        /**
+         * Get the candidates added after the index was built.
+         *
+         * @return the entries, in no particular order
+         */
+        Set<Entry> added() {
+            return added;
+        }
+
+        /**
+         * Whether every candidate contains the query, so that they need not be checked. It is true when the query is one bigram or one trigram.
+         *
+         * @return true if the candidates are the matches
+         */
+        boolean isExact() {
+            return exact;
+        }
+    }
+
+    /**
+     * An open addressing hash table from n-grams to their posting arrays, which is only used while building the index.
+     */
+    private static final class GramTable {
+
+        private long[] keys = new long[1 << 16];
+        /**
+         * The number of entries of every n-gram, and then the next position in its posting array. Zero means the slot is empty.
+         */
+        private int[] values = new int[1 << 16];
+        /**
+         * The last ordinal plus one of every n-gram, so that an entry is counted once for an n-gram.
+         */
+        private int[] lasts = new int[1 << 16];
+        private int size;
+
+        private int slot(final long key) {
+            final int mask = keys.length - 1;
+            // Fibonacci hashing, which takes the high bits of the product.
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+            while (values[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void count(final long key, final int ordinal) {
+            int slot = slot(key);
+            if (values[slot] == 0) {
+                if (size * 4 >= keys.length * 3) {
+                    grow();
+                    slot = slot(key);
+                }
+                keys[slot] = key;
+                ++size;
+            } else if (lasts[slot] == ordinal + 1) {
+                return;
+            }
+            ++values[slot];
+            lasts[slot] = ordinal + 1;
+        }
+
+        long[] grams() {
+            final long[] grams = new long[size];
+            int i = 0;
+            for (int slot = 0; slot < keys.length; ++slot) {
+                if (values[slot] != 0) {
+                    grams[i++] = keys[slot];
+                }
+            }
+            return grams;
+        }
+
+        /**
+         * Set the start of the posting array of an n-gram.
+         *
+         * @return the number of entries of the n-gram
+         */
+        int start(final long key, final int start) {
+            final int slot = slot(key);
+            final int count = values[slot];
+            // Keep the slot occupied, since the start can be zero.
+            values[slot] = start + 1;
+            lasts[slot] = 0;
+            return count;
+        }
+
+        void fill(final long key, final int ordinal, final int[] ordinals) {
+            final int slot = slot(key);
+            if (lasts[slot] == ordinal + 1) {
+                return;
+            }
+            ordinals[values[slot]++ - 1] = ordinal;
+            lasts[slot] = ordinal + 1;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            final int[] oldLasts = lasts;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            lasts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldValues[i] != 0) {
+                    final int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    lasts[slot] = oldLasts[i];
+                }
+            }
+        }
+    }
+
+    // -----Class Method-----
+    private static long bigram(final String str, final int i) {
+        return ((long) str.charAt(i) << 16) | str.charAt(i + 1);
+    }
+
+    private static long trigram(final String str, final int i) {
+        return (1L << 48) | ((long) str.charAt(i) << 32) | ((long) str.charAt(i + 1) << 16) | str.charAt(i + 2);
+    }
+
+    // -----Object Constant-----
+    /**
+     * Get the folded string to be indexed from an entry.
+     */
+    private final Function<Entry, String> text;
+    /**
+     * The posting sets of n-grams of the entries added after the index was built.
+     */
+    private final HashMap<Long, HashSet<Entry>> added = new HashMap<>();
+    /**
+     * The ordinals of the entries removed after the index was built.
+     */
+    private final BitSet removed = new BitSet();
+    /**
+     * The entries added after the index was built, sorted by their folded left strings.
+     */
+    private final ArrayList<Entry> addedOrder = new ArrayList<>();
+
+    // -----Object Variable-----
+    /**
+     * Whether the index is built. If not, entries are not indexed and no query can be answered.
+     */
+    private boolean built;
+    /**
+     * The entries when the index was built, sorted by their folded left strings. Their indices are their ordinals.
+     */
+    private Entry[] base = NO_ENTRIES;
+    /**
+     * The sorted n-grams of the built index.
+     */
+    private long[] grams = NO_GRAMS;
+    /**
+     * The start of the posting array of every n-gram in the ordinals, and the end of all posting arrays.
+     */
+    private int[] starts = {0};
+    /**
+     * The posting arrays of all n-grams, each sorted.
+     */
+    private int[] ordinals = NO_ORDINALS;
+    /**
+     * The number of entries added after the index was built.
+     */
+    private int addedCount;
+
+    // -----Constructor-----
+    /**
+     * Construct an empty index, which is not built.
+     *
+     * @param text input a function to get the folded string to be indexed from an entry
+     */
+    SubstringIndex(final Function<Entry, String> text) {
+        this.text = text;
+    }
+
+    // -----Object Method-----
+    /**
+     * Remove all entries. The index is not built after that.
+     */
+    void clear() {
+        built = false;
+        base = NO_ENTRIES;
+        grams = NO_GRAMS;
+        starts = new int[]{0};
+        ordinals = NO_ORDINALS;
+        added.clear();
+        removed.clear();
+        addedOrder.clear();
+        addedCount = 0;
+    }
+
+    /**
+     * Whether the index is built, so that it can answer queries.
+     *
+     * @return true if it is built
+     */
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Build the index from all entries.
+     *
+     * @param sorted input all entries sorted by their folded left strings
+     */
+    void build(final List<Entry> sorted) {
+        clear();
+        final Entry[] entries = sorted.toArray(new Entry[sorted.size()]);
+        final GramTable table = new GramTable();
+        // Count the entries of every n-gram first, so that every posting array is allocated once in a single array.
+        for (int ordinal = 0; ordinal < entries.length; ++ordinal) {
+            final String str = text.apply(entries[ordinal]);
+            final int length = str.length();
+            for (int i = 0; i < length - 1; ++i) {
+                table.count(bigram(str, i), ordinal);
+                if (i < length - 2) {
+                    table.count(trigram(str, i), ordinal);
+                }
+            }
+        }
+        final long[] sortedGrams = table.grams();
+        Arrays.sort(sortedGrams);
+        final int[] gramStarts = new int[sortedGrams.length + 1];
+        int total = 0;
+        for (int i = 0; i < sortedGrams.length; ++i) {
+            gramStarts[i] = total;
+            total += table.start(sortedGrams[i], total);
+        }
+        gramStarts[sortedGrams.length] = total;
+        // Fill the posting arrays in the order of ordinals, so every posting array is sorted.
+        final int[] gramOrdinals = new int[total];
+        for (int ordinal = 0; ordinal < entries.length; ++ordinal) {
+            final String str = text.apply(entries[ordinal]);
+            final int length = str.length();
+            for (int i = 0; i < length - 1; ++i) {
+                table.fill(bigram(str, i), ordinal, gramOrdinals);
+                if (i < length - 2) {
+                    table.fill(trigram(str, i), ordinal, gramOrdinals);
+                }
+            }
+        }
+        base = entries;
+        grams = sortedGrams;
+        starts = gramStarts;
+        ordinals = gramOrdinals;
+        built = true;
+    }
+
+    /**
+     * Add an entry. It is ignored if the index is not built.
+     *
+     * @param entry input an entry
+     */
+    void add(final Entry entry) {
+        if (!built) {
+            return;
+        }
+        if (addedCount >= Math.max(MIN_ADDED_LIMIT, base.length / 8)) {
+            // The added posting sets cost much more than the built ones.
+            clear();
+            return;
+        }
+        final String str = text.apply(entry);
+        final int length = str.length();
+        for (int i = 0; i < length - 1; ++i) {
+            added.computeIfAbsent(bigram(str, i), k -> new HashSet<>()).add(entry);
+            if (i < length - 2) {
+                added.computeIfAbsent(trigram(str, i), k -> new HashSet<>()).add(entry);
+            }
+        }
+        final int position = Collections.binarySearch(addedOrder, entry, Entry.ORDER);
+        addedOrder.add(position < 0 ? -(position + 1) : position, entry);
+        ++addedCount;
+    }
+
+    /**
+     * Remove an entry. The indexed string of the entry must not be changed after it was added. It is ignored if the index is not built.
+     *
+     * @param entry input an entry
+     */
+    void remove(final Entry entry) {
+        if (!built) {
+            return;
+        }
+        final int ordinal = Arrays.binarySearch(base, entry, Entry.ORDER);
+        if (ordinal >= 0 && base[ordinal] == entry) {
+            removed.set(ordinal);
+            return;
+        }
+        final String str = text.apply(entry);
+        final int length = str.length();
+        for (int i = 0; i < length - 1; ++i) {
+            removeAdded(bigram(str, i), entry);
+            if (i < length - 2) {
+                removeAdded(trigram(str, i), entry);
+            }
+        }
+        final int position = Collections.binarySearch(addedOrder, entry, Entry.ORDER);
+        if (position >= 0 && addedOrder.get(position) == entry) {
+            addedOrder.remove(position);
+        }
+        --addedCount;
+    }
+
+    private void removeAdded(final long gram, final Entry entry) {
+        final HashSet<Entry> posting = added.get(gram);
+        if (posting != null) {
+            posting.remove(entry);
+            if (posting.isEmpty()) {
+                added.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Get the candidates which may contain a query. Every entry whose indexed string contains the query is in the candidates, but the candidates still need to be checked.
+     *
+     * @param folded input a folded query
+     * @return the candidates, or null if the query is too short to use this index or the index is not built
+     */
+    Candidates candidates(final String folded) {
+        final int length = folded.length();
+        if (!built || length < MIN_QUERY_LENGTH) {
+            return null;
+        }
+        if (length == 2) {
+            return posting(bigram(folded, 0), true);
+        }
+        // Use the smallest posting set of all trigrams of the query.
+        Candidates smallest = null;
+        for (int i = 0; i < length - 2; ++i) {
+            final Candidates posting = posting(trigram(folded, i), length == 3);
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+                if (smallest.size() == 0) {
+                    break;
+                }
+            }
+        }
+        return smallest;
+    }
+
+    private Candidates posting(final long gram, final boolean exact) {
+        final int index = Arrays.binarySearch(grams, gram);
+        final HashSet<Entry> posting = added.get(gram);
+        final Set<Entry> addedPosting = posting == null ? Collections.emptySet() : posting;
+        if (index < 0) {
+            return new Candidates(this, 0, 0, addedPosting, exact);
+        }
+        return new Candidates(this, starts[index], starts[index + 1], addedPosting, exact);
+    }
+}
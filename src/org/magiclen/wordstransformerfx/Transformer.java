@@ -0,0 +1,398 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable transformer which replaces every left string found in texts with its newest right string. It is an Aho-Corasick automaton built from all left strings, so a text is transformed in one linear pass, and the leftmost longest left string wins when left strings overlap. Texts are streamed by lines, so the memory only depends on the longest line.
+ *
+ * A transformer never changes after it is built, so it can be shared by threads.
+ *
+ * @author Magic Len
+ */
+final class Transformer {
+
+    // -----Class Constant-----
+    /**
+     * The size of the buffer for streaming.
+     */
+    private static final int CHUNK_SIZE = 65536;
+    /**
+     * The root node.
+     */
+    private static final int ROOT = 0;
+
+    // -----Class Method-----
+    /**
+     * Fold a character. Unlike folding a string, it never changes the length of a text, so the positions of matches are also the positions in the original text.
+     *
+     * @param c input a character
+     * @return the folded character
+     */
+    static char foldChar(final char c) {
+        if (c >= '\uFF01' && c <= '\uFF5E') {
+            // Full-width ASCII characters.
+            return Character.toUpperCase(Character.toLowerCase((char) (c - 0xFEE0)));
+        }
+        return Character.toUpperCase(Character.toLowerCase(c));
+    }
+
+    private static String foldChars(final String str) {
+        final char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = foldChar(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Whether a character is a part of a word which is separated by spaces or punctuation, such as a Latin letter.
+     *
+     * @param c input a character
+     * @return true if it is a word character
+     */
+    private static boolean isWordChar(final char c) {
+        if (Character.isDigit(c) || c == '_') {
+            return true;
+        }
+        if (!Character.isLetter(c)) {
+            return false;
+        }
+        final Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.LATIN || script == Character.UnicodeScript.GREEK || script == Character.UnicodeScript.CYRILLIC;
+    }
+
+    // -----Object Constant-----
+    /**
+     * The right strings to replace with.
+     */
+    private final String[] values;
+    /**
+     * Whether a left string which starts or ends with a word character can only match whole words.
+     */
+    private final boolean wholeWords;
+
+    // -----Object Variable-----
+    /**
+     * The character on the edge into each node. Children of a node are stored contiguously and sorted by their characters.
+     */
+    private char[] label;
+    /**
+     * The first child of each node.
+     */
+    private int[] firstChild;
+    /**
+     * The number of children of each node.
+     */
+    private int[] childCount;
+    /**
+     * The depth of each node, which is the length of its prefix.
+     */
+    private int[] depth;
+    /**
+     * The failure link of each node.
+     */
+    private int[] fail;
+    /**
+     * The index of the value whose left string ends at each node, or -1.
+     */
+    private int[] output;
+    /**
+     * The nearest node with an output along the failure links of each node, or -1.
+     */
+    private int[] dictionaryLink;
+    /**
+     * The number of nodes.
+     */
+    private int nodeCount;
+
+    // -----Constructor-----
+    /**
+     * Build a transformer.
+     *
+     * @param entries input the entries
+     * @param wholeWords input true if a left string which starts or ends with a word character, such as a Latin letter, can only match whole words
+     */
+    Transformer(final List<Entry> entries, final boolean wholeWords) {
+        this.wholeWords = wholeWords;
+        final int size = entries.size();
+        final String[][] keys = new String[size][];
+        int totalLength = 1;
+        for (int i = 0; i < size; ++i) {
+            final Entry entry = entries.get(i);
+            final String left = entry.left();
+            keys[i] = new String[]{foldChars(left), entry.current()};
+            totalLength += left.length();
+        }
+        Arrays.sort(keys, (a, b) -> a[0].compareTo(b[0]));
+        values = new String[size];
+        final String[] folded = new String[size];
+        for (int i = 0; i < size; ++i) {
+            folded[i] = keys[i][0];
+            values[i] = keys[i][1];
+        }
+
+        final int capacity = Math.min(totalLength, 1 << 16);
+        label = new char[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        depth = new int[capacity];
+        output = new int[capacity];
+        nodeCount = 1;
+        output[ROOT] = -1;
+        buildTrie(folded);
+        buildLinks();
+    }
+
+    // -----Object Method-----
+    private int newNode(final char c, final int nodeDepth) {
+        if (nodeCount == label.length) {
+            final int capacity = nodeCount * 2;
+            label = Arrays.copyOf(label, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            output = Arrays.copyOf(output, capacity);
+        }
+        final int node = nodeCount++;
+        label[node] = c;
+        depth[node] = nodeDepth;
+        output[node] = -1;
+        return node;
+    }
+
+    /**
+     * Build the trie from sorted keys. The keys sharing the prefix of a node are a contiguous range, so the children of a node can be allocated together.
+     *
+     * @param keys input the sorted folded keys
+     */
+    private void buildTrie(final String[] keys) {
+        // Each frame is a node with the range of keys under it: {node, from, to}.
+        int[][] frames = new int[64][];
+        int top = 0;
+        frames[top++] = new int[]{ROOT, 0, keys.length};
+        while (top > 0) {
+            final int[] frame = frames[--top];
+            final int node = frame[0];
+            final int d = depth[node];
+            int from = frame[1];
+            final int to = frame[2];
+            // The key which equals the prefix is sorted first.
+            while (from < to && keys[from].length() == d) {
+                output[node] = from;
+                ++from;
+            }
+            // Allocate all children first.
+            firstChild[node] = nodeCount;
+            int count = 0;
+            int start = from;
+            while (start < to) {
+                final char c = keys[start].charAt(d);
+                int end = start + 1;
+                while (end < to && keys[end].charAt(d) == c) {
+                    ++end;
+                }
+                final int child = newNode(c, d + 1);
+                ++count;
+                if (top == frames.length) {
+                    frames = Arrays.copyOf(frames, top * 2);
+                }
+                frames[top++] = new int[]{child, start, end};
+                start = end;
+            }
+            childCount[node] = count;
+        }
+    }
+
+    /**
+     * Build the failure links and the dictionary links in breadth-first order.
+     */
+    private void buildLinks() {
+        fail = new int[nodeCount];
+        dictionaryLink = new int[nodeCount];
+        dictionaryLink[ROOT] = -1;
+        final int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        while (head < tail) {
+            final int node = queue[head++];
+            final int first = firstChild[node];
+            final int end = first + childCount[node];
+            for (int child = first; child < end; ++child) {
+                if (node == ROOT) {
+                    fail[child] = ROOT;
+                } else {
+                    int f = fail[node];
+                    int next;
+                    while ((next = child(f, label[child])) < 0 && f != ROOT) {
+                        f = fail[f];
+                    }
+                    fail[child] = next < 0 ? ROOT : next;
+                }
+                final int f = fail[child];
+                dictionaryLink[child] = output[f] >= 0 ? f : dictionaryLink[f];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private int child(final int node, final char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char m = label[middle];
+            if (m < c) {
+                low = middle + 1;
+            } else if (m > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Transform a text.
+     *
+     * @param text input a text
+     * @return the transformed text
+     */
+    String transform(final String text) {
+        final StringWriter writer = new StringWriter(text.length());
+        try {
+            transform(new StringReader(text), writer);
+        } catch (final IOException e) {
+            // StringReader and StringWriter never throw it.
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Transform a stream. The stream is read chunk by chunk, and every chunk ends at a line feed, so that a left string never crosses two chunks.
+     *
+     * @param in input a reader of the text
+     * @param out input a writer of the transformed text
+     * @return the number of replacements
+     * @throws IOException if the text cannot be read or written
+     */
+    long transform(final Reader in, final Writer out) throws IOException {
+        char[] buffer = new char[CHUNK_SIZE];
+        int[] bestLength = new int[CHUNK_SIZE];
+        int[] bestValue = new int[CHUNK_SIZE];
+        int length = 0;
+        long replacements = 0;
+        while (true) {
+            final int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                if (length > 0) {
+                    replacements += transform(buffer, length, bestLength, bestValue, out);
+                }
+                break;
+            }
+            length += read;
+            int lineEnd = length - 1;
+            while (lineEnd >= 0 && buffer[lineEnd] != '\n') {
+                --lineEnd;
+            }
+            if (lineEnd >= 0) {
+                final int chunkLength = lineEnd + 1;
+                replacements += transform(buffer, chunkLength, bestLength, bestValue, out);
+                System.arraycopy(buffer, chunkLength, buffer, 0, length - chunkLength);
+                length -= chunkLength;
+            } else if (length == buffer.length) {
+                // A very long line. Keep it in the buffer until its end is read.
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                bestLength = new int[buffer.length];
+                bestValue = new int[buffer.length];
+            }
+        }
+        out.flush();
+        return replacements;
+    }
+
+    /**
+     * Transform a chunk of text which consists of whole lines.
+     */
+    private long transform(final char[] text, final int length, final int[] bestLength, final int[] bestValue, final Writer out) throws IOException {
+        Arrays.fill(bestLength, 0, length, 0);
+        int state = ROOT;
+        for (int i = 0; i < length; ++i) {
+            final char c = foldChar(text[i]);
+            int next;
+            while ((next = child(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = next < 0 ? ROOT : next;
+            // Record the longest match for every start position.
+            for (int node = output[state] >= 0 ? state : dictionaryLink[state]; node >= 0; node = dictionaryLink[node]) {
+                final int matchLength = depth[node];
+                final int start = i - matchLength + 1;
+                if (matchLength > bestLength[start] && isWholeWord(text, length, start, i + 1)) {
+                    bestLength[start] = matchLength;
+                    bestValue[start] = output[node];
+                }
+            }
+        }
+        long replacements = 0;
+        int plain = 0;
+        int i = 0;
+        while (i < length) {
+            final int matchLength = bestLength[i];
+            if (matchLength > 0) {
+                out.write(text, plain, i - plain);
+                out.write(values[bestValue[i]]);
+                ++replacements;
+                i += matchLength;
+                plain = i;
+            } else {
+                ++i;
+            }
+        }
+        out.write(text, plain, length - plain);
+        return replacements;
+    }
+
+    private boolean isWholeWord(final char[] text, final int length, final int start, final int end) {
+        if (!wholeWords) {
+            return true;
+        }
+        if (start > 0 && isWordChar(text[start]) && isWordChar(text[start - 1])) {
+            return false;
+        }
+        return !(end < length && isWordChar(text[end - 1]) && isWordChar(text[end]));
+    }
+
+    /**
+     * Get the number of left strings.
+     *
+     * @return the number of left strings
+     */
+    int size() {
+        return values.length;
+    }
+}
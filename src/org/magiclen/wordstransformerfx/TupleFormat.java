@@ -0,0 +1,92 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * The formats of tuple files which can be imported and exported in bulk, such as glossaries from translation vendors.
+ *
+ * @author Magic Len
+ */
+public enum TupleFormat {
+
+    /**
+     * Comma-separated values. Fields may be quoted with '"' as described in RFC 4180.
+     */
+    CSV("csv"),
+    /**
+     * Tab-separated values. Fields cannot contain tabs.
+     */
+    TSV("tsv"),
+    /**
+     * Translation Memory eXchange. Every translation unit is a tuple, whose left string is the segment in the source language.
+     */
+    TMX("tmx");
+
+    // -----Class Constant-----
+    /**
+     * The default language of left strings in TMX files, which is the language of the keywords of the shipped WordsData.
+     */
+    public static final String DEFAULT_SOURCE_LANGUAGE = "en";
+    /**
+     * The default language of right strings in TMX files, which is the language of the values of the shipped WordsData.
+     */
+    public static final String DEFAULT_TARGET_LANGUAGE = "zh-TW";
+
+    // -----Class Method-----
+    /**
+     * Get the format of a file by its extension.
+     *
+     * @param file input the file
+     * @return the format, or null if the extension is unknown
+     */
+    public static TupleFormat of(final File file) {
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        final String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        for (final TupleFormat format : values()) {
+            if (format.extension.equals(extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    // -----Object Constant-----
+    private final String extension;
+
+    // -----Constructor-----
+    private TupleFormat(final String extension) {
+        this.extension = extension;
+    }
+
+    // -----Object Method-----
+    /**
+     * Get the file extension of the format.
+     *
+     * @return the extension, without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A streaming reader of tuple files in a {@link TupleFormat}. A row which is malformed does not stop reading. It is read as a row with a problem, so that the following rows can still be read.
+ *
+ * @author Magic Len
+ */
+abstract class TupleReader implements Closeable {
+
+    // -----Class Method-----
+    /**
+     * Open a tuple file.
+     *
+     * @param file input the file
+     * @param format input the format of the file
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    static TupleReader open(final File file, final TupleFormat format) throws IOException {
+        switch (format) {
+            case CSV:
+                return new Delimited(file, ',', true);
+            case TSV:
+                return new Delimited(file, '\t', false);
+            default:
+                return new Tmx(file);
+        }
+    }
+
+    // -----Object Constant-----
+    /**
+     * The channel of the file, which is used to know the progress.
+     */
+    private final FileChannel channel;
+    private final long size;
+
+    // -----Object Variable-----
+    /**
+     * The number of the current row.
+     */
+    int row;
+    /**
+     * The line number where the current row starts.
+     */
+    int line;
+    /**
+     * The left string of the current row.
+     */
+    String left;
+    /**
+     * The right string of the current row, including its history.
+     */
+    String right;
+    /**
+     * The problem of the current row, or null if it is well-formed.
+     */
+    String problem;
+
+    // -----Constructor-----
+    TupleReader(final FileInputStream in) throws IOException {
+        channel = in.getChannel();
+        size = channel.size();
+    }
+
+    // -----Object Method-----
+    /**
+     * Read the next row. Blank rows are skipped.
+     *
+     * @return true if a row was read, or false if the end of the file was reached
+     * @throws IOException if the file cannot be read any more
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * Get the ratio of bytes which have been read. Because bytes are read ahead, it is a little ahead of the rows.
+     *
+     * @return the ratio, from 0 to 1
+     */
+    double progress() {
+        try {
+            return size == 0 ? 1 : Math.min(1, (double) channel.position() / size);
+        } catch (final IOException ex) {
+            return 0;
+        }
+    }
+
+    // -----Class Class-----
+    /**
+     * A reader of CSV or TSV files. The first two fields of a row are its left string and its right string, and the other fields are ignored.
+     */
+    static final class Delimited extends TupleReader {
+
+        private final BufferedReader reader;
+        private final char delimiter;
+        /**
+         * Whether fields can be quoted.
+         */
+        private final boolean quoted;
+        private final StringBuilder field = new StringBuilder();
+        private int lineNumber;
+
+        private Delimited(final File file, final char delimiter, final boolean quoted) throws IOException {
+            this(new FileInputStream(file), delimiter, quoted);
+        }
+
+        private Delimited(final FileInputStream in, final char delimiter, final boolean quoted) throws IOException {
+            super(in);
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+            this.delimiter = delimiter;
+            this.quoted = quoted;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            String str;
+            do {
+                str = reader.readLine();
+                if (str == null) {
+                    return false;
+                }
+                ++lineNumber;
+                if (lineNumber == 1 && !str.isEmpty() && str.charAt(0) == '\uFEFF') {
+                    // Skip the byte order mark.
+                    str = str.substring(1);
+                }
+            } while (str.trim().isEmpty());
+            ++row;
+            line = lineNumber;
+            left = null;
+            right = null;
+            problem = null;
+            int fields = 0;
+            int i = 0;
+            while (true) {
+                field.setLength(0);
+                if (quoted && i < str.length() && str.charAt(i) == '"') {
+                    // A quoted field, which may contain delimiters, quotes ("") and line breaks.
+                    ++i;
+                    while (true) {
+                        if (i == str.length()) {
+                            str = reader.readLine();
+                            if (str == null) {
+                                problem = "A quoted field is not closed.";
+                                return true;
+                            }
+                            ++lineNumber;
+                            field.append('\n');
+                            i = 0;
+                            continue;
+                        }
+                        final char c = str.charAt(i++);
+                        if (c == '"') {
+                            if (i < str.length() && str.charAt(i) == '"') {
+                                field.append('"');
+                                ++i;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            field.append(c);
+                        }
+                    }
+                    if (i < str.length() && str.charAt(i) != delimiter) {
+                        problem = "A quoted field is followed by other characters.";
+                        // Skip the rest of the row.
+                        return true;
+                    }
+                } else {
+                    final int end = str.indexOf(delimiter, i);
+                    field.append(str, i, end < 0 ? str.length() : end);
+                    i = end < 0 ? str.length() : end;
+                }
+                if (fields == 0) {
+                    left = field.toString().trim();
+                } else if (fields == 1) {
+                    right = field.toString().trim();
+                }
+                ++fields;
+                if (i >= str.length()) {
+                    break;
+                }
+                // Skip the delimiter.
+                ++i;
+            }
+            if (fields < 2) {
+                problem = "The row has no right string.";
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * A reader of TMX files. The segment in the source language, which is given by the "srclang" attribute of the translation unit or the header, is the left string. The first segment in another language is the right string, unless the history of right strings is given by a "x-history" property.
+     */
+    static final class Tmx extends TupleReader {
+
+        private final FileInputStream in;
+        private final XMLStreamReader xml;
+        /**
+         * The source language of the header.
+         */
+        private String headerSourceLanguage;
+
+        private Tmx(final File file) throws IOException {
+            this(new FileInputStream(file));
+        }
+
+        private Tmx(final FileInputStream in) throws IOException {
+            super(in);
+            this.in = in;
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            // Never resolve external entities of untrusted files.
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            try {
+                xml = factory.createXMLStreamReader(in);
+            } catch (final XMLStreamException ex) {
+                in.close();
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        private static boolean sameLanguage(final String language, final String other) {
+            if (language == null || other == null) {
+                return false;
+            }
+            return language.toLowerCase(Locale.ROOT).replace('_', '-').equals(other.toLowerCase(Locale.ROOT).replace('_', '-'));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    final String name = xml.getLocalName();
+                    if (name.equals("header")) {
+                        headerSourceLanguage = xml.getAttributeValue(null, "srclang");
+                    } else if (name.equals("tu")) {
+                        readUnit();
+                        return true;
+                    }
+                }
+                return false;
+            } catch (final XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        private void readUnit() throws XMLStreamException {
+            ++row;
+            line = xml.getLocation().getLineNumber();
+            left = null;
+            right = null;
+            problem = null;
+            String sourceLanguage = xml.getAttributeValue(null, "srclang");
+            if (sourceLanguage == null || sourceLanguage.equals("*all*")) {
+                sourceLanguage = headerSourceLanguage;
+            }
+            String leftLanguage = null;
+            String history = null;
+            String language = null;
+            int depth = 1;
+            while (depth > 0) {
+                final int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    --depth;
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                final String name = xml.getLocalName();
+                if (name.equals("tuv")) {
+                    ++depth;
+                    language = xml.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+                    if (language == null) {
+                        // TMX 1.1 uses the "lang" attribute.
+                        language = xml.getAttributeValue(null, "lang");
+                    }
+                } else if (name.equals("seg")) {
+                    final String segment = readSegment().trim();
+                    if (sourceLanguage == null) {
+                        // Without the source language, the first segment is the source, and the first segment in another language is the target.
+                        if (left == null) {
+                            left = segment;
+                            leftLanguage = language;
+                        } else if (right == null && !sameLanguage(language, leftLanguage)) {
+                            right = segment;
+                        }
+                    } else if (sameLanguage(language, sourceLanguage) && left == null) {
+                        left = segment;
+                    } else if (right == null && !sameLanguage(language, sourceLanguage)) {
+                        right = segment;
+                    }
+                } else if (name.equals("prop") && "x-history".equals(xml.getAttributeValue(null, "type"))) {
+                    history = xml.getElementText().trim();
+                } else {
+                    ++depth;
+                }
+            }
+            if (history != null) {
+                right = history;
+            }
+            if (left == null) {
+                problem = "The translation unit has no segment in the source language.";
+            } else if (right == null) {
+                problem = "The translation unit has no segment in another language.";
+            }
+        }
+
+        /**
+         * Read the text of a segment. The inline codes of the original document, such as the content of "ph" and "bpt", are not text, so they are skipped.
+         *
+         * @return the text
+         * @throws XMLStreamException if the segment is malformed
+         */
+        private String readSegment() throws XMLStreamException {
+            final StringBuilder sb = new StringBuilder();
+            int depth = 1;
+            int codeDepth = 0;
+            while (depth > 0) {
+                final int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    ++depth;
+                    final String name = xml.getLocalName();
+                    if (codeDepth > 0 || name.equals("ph") || name.equals("bpt") || name.equals("ept") || name.equals("it") || name.equals("ut")) {
+                        ++codeDepth;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    --depth;
+                    if (codeDepth > 0) {
+                        --codeDepth;
+                    }
+                } else if (codeDepth == 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+                    sb.append(xml.getText());
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                xml.close();
+            } catch (final XMLStreamException ex) {
+                // Nothing to do.
+            }
+            in.close();
+        }
+    }
+}
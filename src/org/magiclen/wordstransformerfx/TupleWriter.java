@@ -0,0 +1,196 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A streaming writer of tuple files in a {@link TupleFormat}.
+ *
+ * @author Magic Len
+ */
+abstract class TupleWriter implements Closeable {
+
+    // -----Class Method-----
+    /**
+     * Create a tuple file.
+     *
+     * @param file input the file
+     * @param format input the format of the file
+     * @param sourceLanguage input the language of left strings, which is only used by TMX
+     * @param targetLanguage input the language of right strings, which is only used by TMX
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    static TupleWriter create(final File file, final TupleFormat format, final String sourceLanguage, final String targetLanguage) throws IOException {
+        switch (format) {
+            case CSV:
+                return new Delimited(file, ',');
+            case TSV:
+                return new Delimited(file, '\t');
+            default:
+                return new Tmx(file, sourceLanguage, targetLanguage);
+        }
+    }
+
+    // -----Object Method-----
+    /**
+     * Write a tuple.
+     *
+     * @param entry input the tuple
+     * @throws IOException if the tuple cannot be written
+     */
+    abstract void write(Entry entry) throws IOException;
+
+    // -----Class Class-----
+    /**
+     * A writer of CSV or TSV files. The right string is written with its history, so that the history is kept when the file is imported again.
+     */
+    static final class Delimited extends TupleWriter {
+
+        private final Writer writer;
+        private final char delimiter;
+
+        private Delimited(final File file, final char delimiter) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65536);
+            this.delimiter = delimiter;
+        }
+
+        private void writeField(final String field) throws IOException {
+            if (delimiter == '\t') {
+                if (field.indexOf('\t') >= 0) {
+                    throw new IOException("A tab cannot be written in a TSV field: ".concat(field));
+                }
+                writer.write(field);
+            } else if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+
+        @Override
+        void write(final Entry entry) throws IOException {
+            writeField(entry.left());
+            writer.write(delimiter);
+            writeField(entry.history());
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * A writer of TMX 1.4 files. The segment in the target language is the newest right string, and the history of right strings is written as a "x-history" property if there is any.
+     */
+    static final class Tmx extends TupleWriter {
+
+        private final Writer writer;
+        private final XMLStreamWriter xml;
+        private final String sourceLanguage, targetLanguage;
+
+        private Tmx(final File file, final String sourceLanguage, final String targetLanguage) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65536);
+            this.sourceLanguage = sourceLanguage;
+            this.targetLanguage = targetLanguage;
+            try {
+                xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeCharacters("\n");
+                xml.writeStartElement("tmx");
+                xml.writeAttribute("version", "1.4");
+                xml.writeCharacters("\n");
+                xml.writeEmptyElement("header");
+                xml.writeAttribute("creationtool", "Words Transformer");
+                xml.writeAttribute("creationtoolversion", Version.getVersion());
+                xml.writeAttribute("segtype", "phrase");
+                xml.writeAttribute("o-tmf", "WordsData");
+                xml.writeAttribute("adminlang", "en");
+                xml.writeAttribute("srclang", sourceLanguage);
+                xml.writeAttribute("datatype", "plaintext");
+                xml.writeCharacters("\n");
+                xml.writeStartElement("body");
+                xml.writeCharacters("\n");
+            } catch (final XMLStreamException ex) {
+                writer.close();
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        private void writeVariant(final String language, final String segment) throws XMLStreamException {
+            xml.writeStartElement("tuv");
+            xml.writeAttribute("xml", XMLConstants.XML_NS_URI, "lang", language);
+            xml.writeStartElement("seg");
+            xml.writeCharacters(segment);
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+
+        @Override
+        void write(final Entry entry) throws IOException {
+            try {
+                xml.writeStartElement("tu");
+                if (entry.revisionCount() > 1) {
+                    xml.writeStartElement("prop");
+                    xml.writeAttribute("type", "x-history");
+                    xml.writeCharacters(entry.history());
+                    xml.writeEndElement();
+                }
+                writeVariant(sourceLanguage, entry.left());
+                writeVariant(targetLanguage, entry.current());
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+            } catch (final XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+                xml.writeEndDocument();
+                xml.close();
+            } catch (final XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            } finally {
+                // The XML writer does not close the underlying writer.
+                writer.close();
+            }
+        }
+    }
+}
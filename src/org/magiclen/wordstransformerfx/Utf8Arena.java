@@ -0,0 +1,163 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An append-only arena of records of UTF-8 strings. Records are packed into large byte chunks, and a record is referred by its chunk and its offset in the chunk, so that a string costs its UTF-8 bytes and a length prefix instead of a String object with its own array. Strings are decoded only when they are used.
+ * <p>
+ * The arena is appended by one thread at a time. A record which is appended before an entry referring it is published in a new version of data can be read by any thread. The bytes of records which are not referred any more are only reclaimed with their whole chunk.
+ *
+ * @author Magic Len
+ */
+final class Utf8Arena {
+
+    // -----Class Constant-----
+    /**
+     * The size of a chunk, which is 1 MiB. A longer record has its own chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // -----Class Method-----
+    /**
+     * Write a string with a varint length prefix into a buffer.
+     *
+     * @param buffer input the buffer, which must have enough space
+     * @param position input the position to write
+     * @param bytes input the UTF-8 bytes of the string
+     * @return the position after the string
+     */
+    static int write(final byte[] buffer, final int position, final byte[] bytes) {
+        int p = position;
+        int remaining = bytes.length;
+        while (remaining >= 0x80) {
+            buffer[p++] = (byte) (remaining | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[p++] = (byte) remaining;
+        System.arraycopy(bytes, 0, buffer, p, bytes.length);
+        return p + bytes.length;
+    }
+
+    /**
+     * Get the number of bytes of a string with its varint length prefix.
+     *
+     * @param bytes input the UTF-8 bytes of the string
+     * @return bytes
+     */
+    static int sizeOf(final byte[] bytes) {
+        int prefix = 1;
+        for (int remaining = bytes.length; remaining >= 0x80; remaining >>>= 7) {
+            ++prefix;
+        }
+        return prefix + bytes.length;
+    }
+
+    /**
+     * Skip a string in a chunk.
+     *
+     * @param chunk input the chunk
+     * @param position input the position of the string
+     * @return the position after the string
+     */
+    static int skip(final byte[] chunk, final int position) {
+        int p = position;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        while ((b = chunk[p++]) < 0) {
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        length |= b << shift;
+        return p + length;
+    }
+
+    /**
+     * Decode a string in a chunk.
+     *
+     * @param chunk input the chunk
+     * @param position input the position of the string
+     * @return the string
+     */
+    static String read(final byte[] chunk, final int position) {
+        int p = position;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        while ((b = chunk[p++]) < 0) {
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        length |= b << shift;
+        return new String(chunk, p, length, StandardCharsets.UTF_8);
+    }
+
+    // -----Object Variable-----
+    /**
+     * The chunk where records are appended.
+     */
+    private byte[] chunk;
+    /**
+     * The position in the chunk where the next record is appended.
+     */
+    private int position = CHUNK_SIZE;
+    /**
+     * The number of bytes of all appended records.
+     */
+    private long size;
+
+    // -----Object Method-----
+    /**
+     * Append a record.
+     *
+     * @param record input the array of the record
+     * @param length input the length of the record
+     * @return the offset of the record in {@link #chunk()}
+     */
+    int append(final byte[] record, final int length) {
+        if (position + length > CHUNK_SIZE) {
+            chunk = new byte[Math.max(CHUNK_SIZE, length)];
+            position = 0;
+        }
+        final int offset = position;
+        System.arraycopy(record, 0, chunk, offset, length);
+        position += length;
+        size += length;
+        return offset;
+    }
+
+    /**
+     * Get the chunk where the last record was appended.
+     *
+     * @return the chunk
+     */
+    byte[] chunk() {
+        return chunk;
+    }
+
+    /**
+     * Get the number of bytes of all appended records, including the records which are not referred any more.
+     *
+     * @return bytes
+     */
+    long size() {
+        return size;
+    }
+}
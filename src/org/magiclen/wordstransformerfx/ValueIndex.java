@@ -0,0 +1,168 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A reverse index from folded right strings to entries. Equal right strings are found by hashing, and the right strings containing a query are found by an n-gram index. It indexes either the newest right strings or the older right strings of the entries, and it is updated entry by entry.
+ *
+ * @author Magic Len
+ */
+final class ValueIndex {
+
+    // -----Class Constant-----
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    // -----Class Method-----
+    private static boolean contains(final Entry[] entries, final Entry entry) {
+        for (final Entry e : entries) {
+            if (e == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // -----Object Constant-----
+    /**
+     * The entries of each folded right string. Different left strings can have the same right string, but only a few.
+     */
+    private final HashMap<String, Entry[]> exact = new HashMap<>();
+    /**
+     * The substring index of the indexed right strings.
+     */
+    private final SubstringIndex partial;
+    /**
+     * Get the folded right strings to be indexed from an entry.
+     */
+    private final Function<Entry, String[]> values;
+
+    // -----Constructor-----
+    /**
+     * Construct an empty index.
+     *
+     * @param history input true to index the older right strings, or false to index the newest right strings
+     */
+    ValueIndex(final boolean history) {
+        if (history) {
+            values = Entry::foldedOlderRevisions;
+            partial = new SubstringIndex(Entry::foldedOlder);
+        } else {
+            values = entry -> new String[]{entry.foldedCurrent()};
+            partial = new SubstringIndex(Entry::foldedCurrent);
+        }
+    }
+
+    // -----Object Method-----
+    /**
+     * Remove all entries. The substring index is not built after that.
+     */
+    void clear() {
+        exact.clear();
+        partial.clear();
+    }
+
+    /**
+     * Build the substring index from all entries. The entries must have been added already.
+     *
+     * @param sorted input all entries sorted by their folded left strings
+     */
+    void build(final List<Entry> sorted) {
+        partial.build(sorted);
+    }
+
+    /**
+     * Whether the substring index is built, so that it can answer substring queries.
+     *
+     * @return true if it is built
+     */
+    boolean isBuilt() {
+        return partial.isBuilt();
+    }
+
+    /**
+     * Add an entry.
+     *
+     * @param entry input an entry
+     */
+    void add(final Entry entry) {
+        for (final String value : values.apply(entry)) {
+            final Entry[] same = exact.get(value);
+            if (same == null) {
+                exact.put(value, new Entry[]{entry});
+            } else if (!contains(same, entry)) {
+                final Entry[] appended = Arrays.copyOf(same, same.length + 1);
+                appended[same.length] = entry;
+                exact.put(value, appended);
+            }
+        }
+        partial.add(entry);
+    }
+
+    /**
+     * Remove an entry. The right strings of the entry must not be changed after it was added.
+     *
+     * @param entry input an entry
+     */
+    void remove(final Entry entry) {
+        for (final String value : values.apply(entry)) {
+            final Entry[] same = exact.get(value);
+            if (same == null || !contains(same, entry)) {
+                continue;
+            }
+            if (same.length == 1) {
+                exact.remove(value);
+            } else {
+                final Entry[] removed = new Entry[same.length - 1];
+                int i = 0;
+                for (final Entry e : same) {
+                    if (e != entry) {
+                        removed[i++] = e;
+                    }
+                }
+                exact.put(value, removed);
+            }
+        }
+        partial.remove(entry);
+    }
+
+    /**
+     * Get the entries which have a right string equal to a folded string.
+     *
+     * @param folded input a folded string
+     * @return the entries, in no particular order
+     */
+    Entry[] equal(final String folded) {
+        final Entry[] entries = exact.get(folded);
+        return entries == null ? NO_ENTRIES : entries;
+    }
+
+    /**
+     * Get the candidates which may have a right string containing a query. Every entry which has a right string containing the query is in the candidates, but the candidates still need to be checked.
+     *
+     * @param folded input a folded query
+     * @return the candidates, or null if the query is too short to use this index or the substring index is not built
+     */
+    SubstringIndex.Candidates candidates(final String folded) {
+        return partial.candidates(folded);
+    }
+}
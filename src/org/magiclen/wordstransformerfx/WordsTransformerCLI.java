@@ -0,0 +1,332 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The headless entry point of Words Transformer. It uses the same database as Words Transformer FX, but it never initializes JavaFX, so that it can run on servers and in scripts.
+ *
+ * @author Magic Len
+ */
+public final class WordsTransformerCLI {
+
+    // -----Class Constant-----
+    /**
+     * The exit status when the command succeeds.
+     */
+    public static final int EXIT_OK = 0;
+    /**
+     * The exit status when nothing is found.
+     */
+    public static final int EXIT_NOT_FOUND = 1;
+    /**
+     * The exit status when the command fails.
+     */
+    public static final int EXIT_ERROR = 2;
+    private static final String USAGE = "Usage: WordsTransformerCLI [-d <WordsData or a directory of dictionaries>] <command> <arguments>\n"
+            .concat("\n")
+            .concat("If a directory is given, lookup and search use all dictionaries in it.\n")
+            .concat("\n")
+            .concat("Commands:\n")
+            .concat("    lookup <keyword>                     print the value of a keyword\n")
+            .concat("    reverse <value>                      print the keywords whose value is a value\n")
+            .concat("    search <keyword>                     print every tuple containing a keyword\n")
+            .concat("    transform <input> <output>           transform a text file\n")
+            .concat("    transform-dir <input> <output>       transform every file in a directory\n")
+            .concat("    import <file>                        import a CSV, TSV or TMX file as one batch\n")
+            .concat("    export <file> [<source> <target>]    export to a CSV, TSV or TMX file (TMX languages: en zh-TW)\n")
+            .concat("    serve [port]                         serve the data over HTTP on localhost\n");
+
+    // -----Class Method-----
+    /**
+     * The initiation of the headless program.
+     *
+     * @param args input the arguments
+     */
+    public static void main(final String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run a command.
+     *
+     * @param args input the arguments
+     * @return the exit status
+     */
+    public static int run(final String[] args) {
+        final PrintStream out, err;
+        try {
+            out = new PrintStream(System.out, true, "UTF-8");
+            err = new PrintStream(System.err, true, "UTF-8");
+        } catch (final UnsupportedEncodingException ex) {
+            throw new InternalError(ex);
+        }
+
+        int p = 0;
+        String dataPath = null;
+        if (args.length >= 2 && args[0].equals("-d")) {
+            dataPath = new File(args[1]).getAbsolutePath();
+            p = 2;
+        }
+        if (args.length - p < 1) {
+            err.print(USAGE);
+            return EXIT_ERROR;
+        }
+        final String command = args[p];
+        final int argumentCount = args.length - p - 1;
+        final boolean valid;
+        switch (command) {
+            case "lookup":
+            case "reverse":
+            case "search":
+            case "import":
+                valid = argumentCount == 1;
+                break;
+            case "export":
+                valid = argumentCount == 1 || argumentCount == 3;
+                break;
+            case "transform":
+            case "transform-dir":
+                valid = argumentCount == 2;
+                break;
+            case "serve":
+                valid = argumentCount <= 1;
+                break;
+            default:
+                valid = false;
+        }
+        if (!valid) {
+            err.print(USAGE);
+            return EXIT_ERROR;
+        }
+
+        if (dataPath != null && new File(dataPath).isDirectory()) {
+            return runDictionaries(dataPath, command, args[p + 1], out, err);
+        }
+
+        final Data data = new Data(dataPath != null ? dataPath : Data.getDefaultDataPath());
+        final List<DataException> problems = data.readData();
+        if (!problems.isEmpty()) {
+            // The data are missing or incomplete, so any result would be wrong.
+            problems.forEach(ex -> printException(err, ex));
+            return EXIT_ERROR;
+        }
+
+        try {
+            switch (command) {
+                case "lookup": {
+                    final String keyword = args[p + 1];
+                    final int index = data.indexOf(keyword);
+                    if (index < 0) {
+                        return EXIT_NOT_FOUND;
+                    }
+                    out.println(data.getRight(index));
+                    return EXIT_OK;
+                }
+                case "reverse": {
+                    final List<DataView.Hit> hits = data.lookupRight(args[p + 1]);
+                    boolean found = false;
+                    boolean formerly = false;
+                    for (final DataView.Hit hit : hits) {
+                        if (hit.isHistory()) {
+                            // The value was replaced. Report the keyword, but not as a result.
+                            if (!formerly) {
+                                err.println("Formerly:");
+                                formerly = true;
+                            }
+                            err.println(hit.getLeft().concat(" = ").concat(hit.getAllRight()));
+                        } else {
+                            out.println(hit.getLeft());
+                            found = true;
+                        }
+                    }
+                    return found ? EXIT_OK : EXIT_NOT_FOUND;
+                }
+                case "search": {
+                    final SearchResult result = data.search(args[p + 1]);
+                    final int total = result.getTotal();
+                    if (total == 0) {
+                        return EXIT_NOT_FOUND;
+                    }
+                    if (result.getRank(0) == SearchResult.Rank.SIMILAR) {
+                        // Nothing contains the keyword. Suggest the similar tuples, but still report that it is not found.
+                        err.println("Did you mean:");
+                        result.page(0, total).forEach(err::println);
+                        return EXIT_NOT_FOUND;
+                    }
+                    result.page(0, total).forEach(out::println);
+                    return EXIT_OK;
+                }
+                case "transform": {
+                    final long replacements = data.transform(new File(args[p + 1]), new File(args[p + 2]));
+                    err.println(String.format("%d words were transformed.", replacements));
+                    return EXIT_OK;
+                }
+                case "serve": {
+                    return serve(data, argumentCount == 1 ? args[p + 1] : null, err);
+                }
+                case "import": {
+                    final File file = new File(args[p + 1]);
+                    final TupleFormat format = formatOf(file, err);
+                    if (format == null) {
+                        return EXIT_ERROR;
+                    }
+                    final ImportReport report = data.importTuples(file, format, null);
+                    report.getProblems().forEach(ex -> printException(err, ex));
+                    err.println(report);
+                    return report.getProblems().isEmpty() ? EXIT_OK : EXIT_ERROR;
+                }
+                case "export": {
+                    final File file = new File(args[p + 1]);
+                    final TupleFormat format = formatOf(file, err);
+                    if (format == null) {
+                        return EXIT_ERROR;
+                    }
+                    final int count = argumentCount == 3 ? data.exportTuples(file, format, args[p + 2], args[p + 3]) : data.exportTuples(file, format, TupleFormat.DEFAULT_SOURCE_LANGUAGE, TupleFormat.DEFAULT_TARGET_LANGUAGE);
+                    err.println(String.format("%d tuples were exported.", count));
+                    return EXIT_OK;
+                }
+                default: {
+                    final long replacements = data.transformDirectory(new File(args[p + 1]), new File(args[p + 2]));
+                    err.println(String.format("%d words were transformed.", replacements));
+                    return EXIT_OK;
+                }
+            }
+        } catch (final DataException ex) {
+            printException(err, ex);
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * Run a command with all dictionaries in a directory. They are loaded one by one, and the loaded ones are evicted under the heap budget, which is set by the system property {@value DictionaryManager#HEAP_BUDGET_PROPERTY} in megabytes.
+     *
+     * @param directory input the directory of dictionaries
+     * @param command input the command
+     * @param keyword input the keyword
+     * @param out input the stream to print results to
+     * @param err input the stream to print messages to
+     * @return the exit status
+     */
+    private static int runDictionaries(final String directory, final String command, final String keyword, final PrintStream out, final PrintStream err) {
+        final DictionaryManager dictionaries = new DictionaryManager(DictionaryManager.getDefaultHeapBudget());
+        dictionaries.addDirectory(new File(directory));
+        final ArrayList<DataException> problems = new ArrayList<>();
+        final List<DictionaryManager.Match> matches;
+        switch (command) {
+            case "lookup":
+                matches = dictionaries.lookup(keyword, problems);
+                break;
+            case "search":
+                matches = dictionaries.search(keyword, Integer.MAX_VALUE, problems);
+                break;
+            default:
+                err.println("Please select a dictionary file to ".concat(command).concat("."));
+                return EXIT_ERROR;
+        }
+        problems.forEach(ex -> printException(err, ex));
+        if (matches.isEmpty()) {
+            return EXIT_NOT_FOUND;
+        }
+        for (final DictionaryManager.Match match : matches) {
+            final DataView.Hit hit = match.getHit();
+            if (command.equals("lookup")) {
+                out.println(match.getDictionary().concat(": ").concat(hit.getRight()));
+            } else {
+                out.println(match.getDictionary().concat(": ").concat(hit.getLeft()).concat(" = ").concat(hit.getAllRight()));
+            }
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Serve the data over HTTP until the program is terminated.
+     *
+     * @param data input the loaded data
+     * @param port input the port, or null to use the default port
+     * @param err input the stream to print messages to
+     * @return the exit status
+     */
+    private static int serve(final Data data, final String port, final PrintStream err) {
+        final LookupServer server;
+        try {
+            server = new LookupServer(data, port == null ? LookupServer.DEFAULT_PORT : Integer.parseInt(port), Runtime.getRuntime().availableProcessors() * 2);
+        } catch (final NumberFormatException ex) {
+            err.print(USAGE);
+            return EXIT_ERROR;
+        } catch (final IOException | IllegalArgumentException ex) {
+            err.println("Cannot start the server!");
+            err.println(ex.getMessage());
+            return EXIT_ERROR;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (final DataException ex) {
+                printException(err, ex);
+            }
+        }));
+        server.start();
+        err.println(String.format("Serving %d tuples on http://localhost:%d/", data.count(), server.getPort()));
+        try {
+            Thread.currentThread().join();
+        } catch (final InterruptedException ex) {
+            // Terminated.
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Get the format of a tuple file by its extension.
+     *
+     * @param file input the file
+     * @param err input the stream to print messages to
+     * @return the format, or null if the extension is unknown
+     */
+    private static TupleFormat formatOf(final File file, final PrintStream err) {
+        final TupleFormat format = TupleFormat.of(file);
+        if (format == null) {
+            err.println("The file must be a .csv, .tsv or .tmx file!");
+        }
+        return format;
+    }
+
+    /**
+     * Print a problem of data.
+     *
+     * @param err input the stream to print to
+     * @param ex input the problem
+     */
+    private static void printException(final PrintStream err, final DataException ex) {
+        err.println(ex.getMessage());
+        final String detail = ex.getDetail();
+        if (detail != null) {
+            err.println(detail);
+        }
+    }
+
+    // -----Constructor-----
+    private WordsTransformerCLI() {
+    }
+}
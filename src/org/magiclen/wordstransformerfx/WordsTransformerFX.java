@@ -17,29 +17,44 @@
  */
 package org.magiclen.wordstransformerfx;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.URLDecoder;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import javafx.scene.control.Separator;
@@ -52,8 +67,10 @@ import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /**
  * Words Transformer FX
@@ -62,20 +79,9 @@ import javafx.stage.Stage;
  */
 public class WordsTransformerFX extends Application {
 
-    // -----Class Constant-----
-    private static final int SCREEN_WIDTH, SCREEN_HEIGHT;
-
-    // -----Initial Static-----
-    static {
-        final Screen mainScreen = Screen.getPrimary();
-        final Rectangle2D screenRectangle = mainScreen.getBounds();
-        SCREEN_WIDTH = (int) screenRectangle.getWidth();
-        SCREEN_HEIGHT = (int) screenRectangle.getHeight();
-    }
-
     // -----Class Method-----
     /**
-     * The initiation of this program.
+     * The initiation of this program. To use the data without any display, see {@link WordsTransformerCLI}.
      *
      * @param args not used
      */
@@ -91,7 +97,7 @@ public class WordsTransformerFX extends Application {
     /**
      * The default value of Height.
      */
-    private final int HEIGHT = 400;
+    private final int HEIGHT = 600;
     /**
      * The default distance of controls.
      */
@@ -108,6 +114,26 @@ public class WordsTransformerFX extends Application {
      * The default size of text.
      */
     private final float FONT_SIZE = 18f;
+    /**
+     * The number of entries to read in each step of loading.
+     */
+    private final int LOAD_STEP = 50000;
+    /**
+     * The delay (in milliseconds) of searching after the keyword is typed.
+     */
+    private final int SEARCH_DELAY = 150;
+    /**
+     * The maximum number of completions of the keyword.
+     */
+    private final int COMPLETION_LIMIT = 10;
+    /**
+     * The executor of all data operations. Data are only accessed by this single thread, so that the JavaFX Application Thread never waits for loading, searching or saving. It is not a daemon thread, so that the last compaction is finished before the program exits.
+     */
+    private final ExecutorService dataExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Words Data"));
+    /**
+     * The interval (in milliseconds) to check whether the program is stopping while the data executor waits for a dialog.
+     */
+    private final long DIALOG_POLL_INTERVAL = 200;
 
     // -----Object Variable-----
     /**
@@ -134,33 +160,54 @@ public class WordsTransformerFX extends Application {
      * The root panel of controls.
      */
     private VBox MAIN_ROOT;
-    private Button bNext, bFind, bPaste, bCopy, bDelete, bAdd;
-    private TextField tfKey, tfFind, tfAllRight, tfLeft, tfRight;
-    private Label lEqual, lCount, lAuthor;
+    private Button bFind, bPaste, bCopy, bDelete, bAdd, bTransform, bImport, bExport;
+    private TextField tfKey, tfFind, tfLeft, tfRight;
+    private Label lEqual, lCount, lDiagnostics, lMatches, lAuthor;
+    private ListView<String> lvResults;
     private BorderPane bpSearch, bpCopy, bpEdit, bpBottom;
-    private HBox hbEdit;
+    private HBox hbEdit, hbFile, hbDictionary;
     private Separator sDivider;
+    private ProgressBar pbLoad;
+    private ComboBox<String> cbDictionary;
+    private ContextMenu cmCompletions;
+    private Tooltip tipDiagnostics;
 
+    /**
+     * All dictionaries. It is only accessed by the data executor.
+     */
+    private final DictionaryManager dictionaries = DictionaryManager.createDefault(DictionaryManager.getDefaultHeapBudget());
+    /**
+     * The selected dictionary. It is only accessed by the data executor.
+     */
     private Data data;
-    private int findIndex = -1;
-
-    // -----Initial Instance-----
-    {
-        try {
-            final String path = Class.forName("org.magiclen.wordstransformerfx.WordsTransformerFX").getProtectionDomain().getCodeSource().getLocation().getPath();
-            final File file = new File(URLDecoder.decode(path, "UTF-8")).getAbsoluteFile();
-            if (!file.exists()) {
-                throw new Exception();
-            }
-            final File parent = file.getParentFile();
-            if (parent == null) {
-                throw new Exception();
-            }
-            data = new Data(new File(parent, "WordsData").getAbsolutePath());
-        } catch (final Exception ex) {
-            data = new Data(new File("WordsData").getAbsolutePath());
-        }
-    }
+    /**
+     * The watcher of the dictionary files, or null if they cannot be watched.
+     */
+    private DataWatcher dataWatcher;
+    /**
+     * The result which is shown.
+     */
+    private SearchResult result = SearchResult.EMPTY;
+    /**
+     * The running or waiting search. It is cancelled when a new search supersedes it.
+     */
+    private Task<SearchResult> searchTask;
+    /**
+     * The debouncer of searching while typing.
+     */
+    private PauseTransition searchDelay;
+    /**
+     * Whether the keyword is being set by choosing a completion, so that it is not completed again.
+     */
+    private boolean completing;
+    /**
+     * Whether a compaction is waiting in the data executor. It is only accessed by the data executor.
+     */
+    private boolean compactionPending;
+    /**
+     * Whether the program is stopping. Dialogs are not shown for the data executor then, because the JavaFX Application Thread will never show them.
+     */
+    private volatile boolean stopping;
 
     // -----Object Method-----
     /**
@@ -187,6 +234,25 @@ public class WordsTransformerFX extends Application {
      * @return the button that user clicked
      */
     private Optional<ButtonType> showAlertDialog(final Alert.AlertType type, final String title, final String header, final String content) {
+        if (!Platform.isFxApplicationThread()) {
+            // Data operations run in the data executor, so their dialogs have to be shown by the JavaFX Application Thread.
+            if (stopping) {
+                return Optional.empty();
+            }
+            final FutureTask<Optional<ButtonType>> task = new FutureTask<>(() -> showAlertDialog(type, title, header, content));
+            Platform.runLater(task);
+            while (true) {
+                try {
+                    return task.get(DIALOG_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException ex) {
+                    if (stopping) {
+                        return Optional.empty();
+                    }
+                } catch (final InterruptedException | ExecutionException ex) {
+                    return Optional.empty();
+                }
+            }
+        }
         final Alert alert = new Alert(type);
         alert.setTitle(title);
         alert.setHeaderText(header);
@@ -211,25 +277,218 @@ public class WordsTransformerFX extends Application {
         });
     }
 
+    /**
+     * Run a data operation in the data executor.
+     *
+     * @param <T> the type of the result
+     * @param callable input the data operation
+     * @param onSucceeded input the action to handle the result in the JavaFX Application Thread
+     * @return the task of the data operation
+     */
+    private <T> Task<T> submit(final Callable<T> callable, final Consumer<T> onSucceeded) {
+        final Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws Exception {
+                return callable.call();
+            }
+        };
+        task.setOnSucceeded(e -> onSucceeded.accept(task.getValue()));
+        task.setOnFailed(e -> {
+            final Throwable ex = task.getException();
+            if (ex instanceof DataException) {
+                showDataException((DataException) ex);
+            }
+        });
+        dataExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Show a problem of data.
+     *
+     * @param ex input the problem
+     */
+    private void showDataException(final DataException ex) {
+        final String detail = ex.getDetail();
+        if (detail == null) {
+            showAlertDialog(AlertType.WARNING, "Hint", null, ex.getMessage());
+        } else {
+            showAlertDialog(AlertType.WARNING, "Hint", ex.getMessage(), detail);
+        }
+    }
+
+    /**
+     * Update the count of data.
+     */
+    private void updateCount() {
+        submit(() -> data.count(), count -> {
+            lCount.setText(String.valueOf(count));
+        });
+        updateDiagnostics();
+    }
+
+    /**
+     * Update the diagnostics of data, which are the search latency and the heap estimate, with the statistics of all operations in the tooltip.
+     */
+    private void updateDiagnostics() {
+        submit(() -> {
+            final DataMetrics metrics = data.getMetrics();
+            final StringBuilder sb = new StringBuilder(String.format("Heap estimate: %d MB, journal: %d changes", metrics.getHeapEstimate() >> 20, metrics.getJournalSize()));
+            for (final DataMetrics.Operation operation : DataMetrics.Operation.values()) {
+                sb.append('\n').append(operation.name().toLowerCase(Locale.ROOT)).append(": ").append(metrics.getStatistics(operation));
+            }
+            return new String[]{String.format("search p99 %.1f ms, %d MB", metrics.getSearch().getP99Millis(), metrics.getHeapEstimate() >> 20), sb.toString()};
+        }, diagnostics -> {
+            lDiagnostics.setText(diagnostics[0]);
+            tipDiagnostics.setText(diagnostics[1]);
+        });
+    }
+
+    /**
+     * Compact the data in the data executor if there are too many changes in the journal. Compactions requested before the waiting one runs are coalesced into it. It must be called in the data executor.
+     */
+    private void scheduleCompaction() {
+        if (!compactionPending && data.shouldCompact()) {
+            compactionPending = true;
+            dataExecutor.execute(() -> {
+                compactionPending = false;
+                try {
+                    data.compact();
+                } catch (final DataException ex) {
+                    showDataException(ex);
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancel the running or waiting search.
+     */
+    private void cancelSearch() {
+        if (searchTask != null) {
+            searchTask.cancel();
+            searchTask = null;
+        }
+    }
+
+    /**
+     * Show a result. Only the rows which are visible in the list are rendered.
+     *
+     * @param result input the result
+     */
+    private void showResult(final SearchResult result) {
+        this.result = result;
+        final int total = result.getTotal();
+        final boolean similar = total > 0 && result.getRank(0) == SearchResult.Rank.SIMILAR;
+        final List<String> rows = result.page(0, total);
+        final int historyStart = total - result.count(SearchResult.Rank.HISTORY);
+        lvResults.setItems(FXCollections.observableList(similar || historyStart < total ? new AbstractList<String>() {
+            @Override
+            public String get(final int index) {
+                if (similar) {
+                    return "Did you mean: ".concat(rows.get(index));
+                }
+                // The tuples found by their older right strings are the last ones.
+                return index >= historyStart ? "Formerly: ".concat(rows.get(index)) : rows.get(index);
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        } : rows));
+        if (total == 0) {
+            lMatches.setText("0");
+            tfFind.setText("---Cannot find the word!---");
+        } else {
+            lMatches.setText(similar ? "0" : String.valueOf(total));
+            lvResults.getSelectionModel().select(0);
+        }
+        updateDiagnostics();
+    }
+
+    /**
+     * Show the selected tuple of the result.
+     *
+     * @param rank input the rank of the selected tuple, or -1 if nothing is selected
+     */
+    private void showSelected(final int rank) {
+        final boolean selected = rank >= 0 && rank < result.getTotal();
+        if (selected) {
+            tfFind.setText(result.getText(rank));
+        }
+        bCopy.setDisable(!selected);
+        bDelete.setDisable(!selected);
+    }
+
+    /**
+     * Clear the result.
+     */
+    private void clearFound() {
+        cancelSearch();
+        result = SearchResult.EMPTY;
+        lvResults.setItems(FXCollections.emptyObservableList());
+        lMatches.setText("");
+        tfFind.setText("");
+        bCopy.setDisable(true);
+        bDelete.setDisable(true);
+    }
+
+    /**
+     * Complete the keyword with the left strings which start with it.
+     */
+    private void complete() {
+        final String prefix = tfKey.getText().trim();
+        if (prefix.equals("")) {
+            cmCompletions.hide();
+            return;
+        }
+        submit(() -> data.getView().complete(prefix, COMPLETION_LIMIT), this::showCompletions);
+    }
+
+    /**
+     * Show the completions of the keyword under the keyword field.
+     *
+     * @param completions input the completions
+     */
+    private void showCompletions(final List<String> completions) {
+        final String prefix = tfKey.getText().trim();
+        // The keyword may have been changed or searched while completing.
+        if (completions.isEmpty() || !tfKey.isFocused() || !Entry.fold(completions.get(0)).startsWith(Entry.fold(prefix)) || completions.size() == 1 && completions.get(0).equals(prefix)) {
+            cmCompletions.hide();
+            return;
+        }
+        final ArrayList<MenuItem> items = new ArrayList<>(completions.size());
+        for (final String completion : completions) {
+            final MenuItem item = new MenuItem(completion);
+            item.setMnemonicParsing(false);
+            item.setOnAction(e -> {
+                completing = true;
+                tfKey.setText(completion);
+                completing = false;
+                tfKey.positionCaret(completion.length());
+                search();
+            });
+            items.add(item);
+        }
+        cmCompletions.getItems().setAll(items);
+        if (!cmCompletions.isShowing()) {
+            cmCompletions.show(tfKey, Side.BOTTOM, 0, 0);
+        }
+    }
+
     /**
      * Search.
      */
     private void search() {
+        searchDelay.stop();
+        cmCompletions.hide();
         final String str = tfKey.getText().trim();
         if (str.equals("")) {
             return;
         }
-        findIndex = data.find(str);
-        final boolean notFound = findIndex == -1;
-        if (notFound) {
-            tfFind.setText("---Cannot find the word!---");
-        } else {
-            tfFind.setText(data.get(findIndex));
-            tfAllRight.setText(data.getLeft(findIndex).concat(" = ").concat(data.getAllRight(findIndex)));
-        }
-        bCopy.setDisable(notFound);
-        bNext.setDisable(notFound);
-        bDelete.setDisable(notFound);
+        cancelSearch();
+        searchTask = submit(() -> data.search(str), this::showResult);
     }
 
     /**
@@ -258,35 +517,123 @@ public class WordsTransformerFX extends Application {
             }
         });
 
-        bNext.setOnAction(e -> {
-            final String keyword = tfKey.getText().trim();
-            if (keyword.equals("")) {
-                return;
-            }
-            findIndex = data.findNext(keyword, findIndex);
-            tfFind.setText(data.get(findIndex));
-            tfAllRight.setText(data.getLeft(findIndex).concat(" = ").concat(data.getAllRight(findIndex)));
+        lvResults.getSelectionModel().selectedIndexProperty().addListener(e -> {
+            showSelected(lvResults.getSelectionModel().getSelectedIndex());
         });
 
         bDelete.setOnAction(e -> {
             final boolean yesOrNo = showConfirmDialog("Question", "Are you sure killing the data?", "It means that you want to make the data remove from the database.");
             if (yesOrNo) {
-                final boolean b = data.delete(findIndex);
-                if (b) {
-                    tfKey.setText("");
-                    lCount.setText(String.valueOf(data.count()));
-                }
+                final String left = result.getLeft(lvResults.getSelectionModel().getSelectedIndex());
+                submit(() -> {
+                    final boolean b = data.delete(left);
+                    scheduleCompaction();
+                    return b;
+                }, b -> {
+                    if (b) {
+                        tfKey.setText("");
+                        updateCount();
+                    }
+                });
             }
         });
 
         bAdd.setOnAction(e -> {
-            final boolean b = data.add(tfLeft.getText().trim(), tfRight.getText().trim());
-            if (b) {
+            final String leftString = tfLeft.getText().trim();
+            final String rightString = tfRight.getText().trim();
+            submit(() -> {
+                final boolean b = data.add(leftString, rightString);
+                scheduleCompaction();
+                return b;
+            }, b -> {
+                if (!b) {
+                    showAlertDialog(AlertType.INFORMATION, "Hint", null, "The data already exists!");
+                }
                 tfLeft.setText("");
                 tfRight.setText("");
-                lCount.setText(String.valueOf(data.count()));
+                updateCount();
+                search();
+            });
+        });
+
+        bTransform.setOnAction(e -> {
+            final FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Choose a text file to transform");
+            final File input = fileChooser.showOpenDialog(MAIN_STAGE);
+            if (input == null) {
+                return;
+            }
+            fileChooser.setTitle("Save the transformed text file");
+            fileChooser.setInitialDirectory(input.getParentFile());
+            fileChooser.setInitialFileName(input.getName());
+            final File output = fileChooser.showSaveDialog(MAIN_STAGE);
+            if (output == null) {
+                return;
+            }
+            if (output.getAbsoluteFile().equals(input.getAbsoluteFile())) {
+                showAlertDialog(AlertType.WARNING, "Hint", null, "The transformed text file cannot replace the original one!");
+                return;
+            }
+            bTransform.setDisable(true);
+            final Task<Long> task = submit(() -> data.transform(input, output), replacements -> {
+                bTransform.setDisable(false);
+                showAlertDialog(AlertType.INFORMATION, "Hint", null, String.format("%d words were transformed.", replacements));
+            });
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, ev -> {
+                bTransform.setDisable(false);
+            });
+        });
+
+        bImport.setOnAction(e -> {
+            final FileChooser fileChooser = newTupleFileChooser("Choose a file of tuples to import");
+            final File file = fileChooser.showOpenDialog(MAIN_STAGE);
+            if (file == null) {
+                return;
+            }
+            final TupleFormat format = TupleFormat.of(file);
+            if (format == null) {
+                showAlertDialog(AlertType.WARNING, "Hint", null, "The file must be a .csv, .tsv or .tmx file!");
+                return;
+            }
+            bImport.setDisable(true);
+            pbLoad.setProgress(0);
+            pbLoad.setVisible(true);
+            final Task<ImportReport> task = submit(() -> data.importTuples(file, format, progress -> Platform.runLater(() -> pbLoad.setProgress(progress))), report -> {
+                bImport.setDisable(false);
+                pbLoad.setVisible(false);
+                final StringBuilder sb = new StringBuilder();
+                for (final DataException ex : report.getProblems()) {
+                    sb.append(ex.getMessage()).append('\n');
+                }
+                showAlertDialog(report.getProblems().isEmpty() ? AlertType.INFORMATION : AlertType.WARNING, "Hint", report.toString(), sb.toString().trim());
+                updateCount();
                 search();
+            });
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, ev -> {
+                bImport.setDisable(false);
+                pbLoad.setVisible(false);
+            });
+        });
+
+        bExport.setOnAction(e -> {
+            final FileChooser fileChooser = newTupleFileChooser("Export the tuples");
+            final File file = fileChooser.showSaveDialog(MAIN_STAGE);
+            if (file == null) {
+                return;
             }
+            final TupleFormat format = TupleFormat.of(file);
+            if (format == null) {
+                showAlertDialog(AlertType.WARNING, "Hint", null, "The file must be a .csv, .tsv or .tmx file!");
+                return;
+            }
+            bExport.setDisable(true);
+            final Task<Integer> task = submit(() -> data.exportTuples(file, format, TupleFormat.DEFAULT_SOURCE_LANGUAGE, TupleFormat.DEFAULT_TARGET_LANGUAGE), count -> {
+                bExport.setDisable(false);
+                showAlertDialog(AlertType.INFORMATION, "Hint", null, String.format("%d tuples were exported.", count));
+            });
+            task.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, ev -> {
+                bExport.setDisable(false);
+            });
         });
 
         tfKey.setOnKeyPressed(e -> {
@@ -295,12 +642,30 @@ public class WordsTransformerFX extends Application {
             }
         });
 
+        searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY));
+        searchDelay.setOnFinished(e -> {
+            search();
+        });
+
         tfKey.textProperty().addListener(e -> {
-            tfFind.setText("");
-            tfAllRight.setText("");
-            bCopy.setDisable(true);
-            bNext.setDisable(true);
-            bDelete.setDisable(true);
+            // Search after typing pauses, instead of searching for every keystroke.
+            searchDelay.playFromStart();
+            clearFound();
+            if (!completing) {
+                complete();
+            }
+        });
+
+        tfKey.focusedProperty().addListener(e -> {
+            if (!tfKey.isFocused()) {
+                cmCompletions.hide();
+            }
+        });
+
+        cbDictionary.setOnAction(e -> {
+            searchDelay.stop();
+            clearFound();
+            readData(cbDictionary.getValue());
         });
 
         final InvalidationListener ilEdit = e -> {
@@ -311,9 +676,105 @@ public class WordsTransformerFX extends Application {
         tfRight.textProperty().addListener(ilEdit);
     }
 
-    private void readData() {
-        data.readData();
-        lCount.setText(String.valueOf(data.count()));
+    /**
+     * Create a file chooser of the files of tuples.
+     *
+     * @param title input the title
+     * @return the file chooser
+     */
+    private FileChooser newTupleFileChooser(final String title) {
+        final FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(title);
+        for (final TupleFormat format : TupleFormat.values()) {
+            final String extension = format.getExtension();
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(format.name().concat(" (*.").concat(extension).concat(")"), "*.".concat(extension)));
+        }
+        return fileChooser;
+    }
+
+    /**
+     * Select a dictionary and read its data step by step in the data executor, if it was not loaded. The entries which have been read can be searched while the rest are being read.
+     *
+     * @param name input the name of the dictionary
+     */
+    private void readData(final String name) {
+        pbLoad.setVisible(true);
+        dataExecutor.execute(new Runnable() {
+            /**
+             * The dictionary being read.
+             */
+            private Data target;
+            /**
+             * The loader of the dictionary, or null if it was loaded already.
+             */
+            private Data.Loader loader;
+
+            @Override
+            public void run() {
+                if (target == null) {
+                    target = dictionaries.open(name);
+                    loader = target.isLoaded() ? null : target.newLoader();
+                    data = target;
+                }
+                final boolean done = loader == null || loader.step(LOAD_STEP);
+                final List<DataException> problems = new ArrayList<>(0);
+                if (done) {
+                    if (loader != null) {
+                        problems.addAll(loader.getProblems());
+                    }
+                    // Other dictionaries may have to leave memory for this one.
+                    problems.addAll(dictionaries.evict());
+                }
+                final int count = target.count();
+                final double progress = loader == null ? 1 : loader.getProgress();
+                final String metrics = String.format("Loaded %d entries in %d ms (%d entries/s)", target.getLoadEntries(), target.getLoadMillis(), target.getLoadRate());
+                // Another dictionary may be selected while this one is being read. Keep reading it, but don't show it.
+                final boolean selected = target == data;
+                Platform.runLater(() -> {
+                    if (!selected) {
+                        problems.forEach(WordsTransformerFX.this::showDataException);
+                        return;
+                    }
+                    lCount.setText(String.valueOf(count));
+                    pbLoad.setProgress(progress);
+                    if (done) {
+                        pbLoad.setVisible(false);
+                        final Tooltip tipCount = new Tooltip(metrics);
+                        tipCount.setFont(font);
+                        Tooltip.install(lCount, tipCount);
+                        updateDiagnostics();
+                        problems.forEach(WordsTransformerFX.this::showDataException);
+                        if (!tfKey.getText().trim().isEmpty()) {
+                            search();
+                        }
+                    }
+                });
+                if (!done && !dataExecutor.isShutdown()) {
+                    // Queue the next step after the operations requested in the meantime.
+                    dataExecutor.execute(this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Watch the dictionary files, so that the changes made by other programs, such as text editors, are reloaded.
+     */
+    private void watchData() {
+        dataExecutor.execute(() -> {
+            try {
+                dataWatcher = new DataWatcher(dictionaries.files(), () -> {
+                    Platform.runLater(() -> {
+                        submit(dictionaries::reloadModified, problems -> {
+                            problems.forEach(this::showDataException);
+                            updateCount();
+                        });
+                    });
+                });
+            } catch (final IOException ex) {
+                // The files can still be used without reloading.
+            }
+        });
     }
 
     /**
@@ -327,75 +788,101 @@ public class WordsTransformerFX extends Application {
         insets = new Insets(GAP, GAP, GAP, GAP);
         padding = new Insets(PADDING_GAP_VERTICAL, PADDING_GAP_HORIZONTAL, PADDING_GAP_VERTICAL, PADDING_GAP_HORIZONTAL);
 
-        bNext = new Button("Next");
         bFind = new Button("Search");
         bPaste = new Button("Paste & Search");
         bCopy = new Button("Copy");
         bDelete = new Button("Delete");
+        bTransform = new Button("Transform a File");
+        bImport = new Button("Import");
+        bExport = new Button("Export");
         bAdd = new Button("Add/Edit");
 
-        bNext.setFont(font);
         bFind.setFont(font);
         bPaste.setFont(font);
         bCopy.setFont(font);
         bDelete.setFont(font);
+        bTransform.setFont(font);
+        bImport.setFont(font);
+        bExport.setFont(font);
         bAdd.setFont(font);
 
         bPaste.setMaxSize(Integer.MAX_VALUE, Integer.MAX_VALUE);
 
-        bNext.setMaxWidth(Integer.MAX_VALUE);
         bDelete.setMaxWidth(Integer.MAX_VALUE);
+        bTransform.setMaxWidth(Integer.MAX_VALUE);
 
         bFind.prefWidthProperty().bind(bAdd.widthProperty());
         bCopy.prefWidthProperty().bind(bAdd.widthProperty());
 
-        bNext.setDisable(true);
         bDelete.setDisable(true);
         bCopy.setDisable(true);
         bAdd.setDisable(true);
 
         tfKey = new TextField();
+        cmCompletions = new ContextMenu();
+        cmCompletions.setStyle(String.format("-fx-font-size: %.0fpx;", font.getSize()));
         tfFind = new TextField();
-        tfAllRight = new TextField();
         tfLeft = new TextField();
         tfRight = new TextField();
 
         tfKey.setFont(font);
         tfFind.setFont(font);
-        tfAllRight.setFont(font);
         tfLeft.setFont(font);
         tfRight.setFont(font);
 
         tfKey.setPromptText("Input a keyword here.");
         tfFind.setPromptText("Please search a word first.");
-        tfAllRight.setPromptText("Please search a word first.");
         tfLeft.setPromptText("keyword");
         tfRight.setPromptText("value");
 
         tfKey.setMaxWidth(Integer.MAX_VALUE);
         tfFind.setMaxWidth(Integer.MAX_VALUE);
-        tfAllRight.setMaxWidth(Integer.MAX_VALUE);
 
         tfFind.setEditable(false);
-        tfAllRight.setEditable(false);
+
+        lvResults = new ListView<>();
+        lvResults.setPlaceholder(new Label("Please search a word first."));
+        lvResults.setPrefHeight(0);
 
         lEqual = new Label("=");
         lCount = new Label("0");
+        lDiagnostics = new Label();
+        lMatches = new Label();
         lAuthor = new Label("Powered by magiclen.org");
 
         lEqual.setFont(font);
         lCount.setFont(font);
+        lDiagnostics.setFont(new Font(FONT_SIZE * 0.7));
+        lMatches.setFont(font);
         lAuthor.setFont(font);
 
         lAuthor.setAlignment(Pos.BASELINE_RIGHT);
         lAuthor.setMaxWidth(Integer.MAX_VALUE);
 
+        final Tooltip tipMatches = new Tooltip("The number of matched data");
+        tipMatches.setFont(font);
+        Tooltip.install(lMatches, tipMatches);
+
+        tipDiagnostics = new Tooltip();
+        tipDiagnostics.setFont(font);
+        Tooltip.install(lDiagnostics, tipDiagnostics);
+
         final Tooltip tipAuthor = new Tooltip("Magic Len");
         tipAuthor.setFont(font);
         Tooltip.install(lAuthor, tipAuthor);
 
         sDivider = new Separator(Orientation.HORIZONTAL);
 
+        pbLoad = new ProgressBar(0);
+        pbLoad.setVisible(false);
+
+        final List<String> names = dictionaries.names();
+        cbDictionary = new ComboBox<>(FXCollections.observableArrayList(names));
+        cbDictionary.setValue(Data.DEFAULT_FILE_NAME);
+        // Only show the dictionaries when there are more than the default one.
+        cbDictionary.setVisible(names.size() > 1);
+        cbDictionary.setManaged(names.size() > 1);
+
         HBox.setMargin(tfLeft, insets);
         HBox.setMargin(tfRight, insets);
         HBox.setMargin(lEqual, insets);
@@ -403,6 +890,14 @@ public class WordsTransformerFX extends Application {
         HBox.setHgrow(tfLeft, Priority.ALWAYS);
         HBox.setHgrow(tfRight, Priority.ALWAYS);
 
+        HBox.setMargin(bTransform, insets);
+        HBox.setMargin(bImport, insets);
+        HBox.setMargin(bExport, insets);
+
+        HBox.setHgrow(bTransform, Priority.ALWAYS);
+
+        hbFile = new HBox(bTransform, bImport, bExport);
+
         hbEdit = new HBox();
         hbEdit.getChildren().addAll(tfLeft, lEqual, tfRight);
 
@@ -410,9 +905,13 @@ public class WordsTransformerFX extends Application {
         BorderPane.setMargin(tfFind, insets);
         BorderPane.setMargin(bFind, insets);
         BorderPane.setMargin(bCopy, insets);
+        BorderPane.setMargin(lMatches, insets);
         BorderPane.setMargin(bAdd, insets);
-        BorderPane.setMargin(lCount, insets);
         BorderPane.setMargin(lAuthor, insets);
+        BorderPane.setMargin(pbLoad, insets);
+        HBox.setMargin(cbDictionary, insets);
+        HBox.setMargin(lCount, insets);
+        HBox.setMargin(lDiagnostics, insets);
 
         bpSearch = new BorderPane(tfKey);
         bpCopy = new BorderPane(tfFind);
@@ -420,32 +919,38 @@ public class WordsTransformerFX extends Application {
         bpBottom = new BorderPane();
 
         bpSearch.setRight(bFind);
+        bpCopy.setLeft(lMatches);
         bpCopy.setRight(bCopy);
         bpEdit.setRight(bAdd);
         bpBottom.setRight(lAuthor);
 
-        bpBottom.setLeft(lCount);
+        hbDictionary = new HBox(cbDictionary, lCount, lDiagnostics);
+        hbDictionary.setAlignment(Pos.CENTER_LEFT);
+
+        bpBottom.setLeft(hbDictionary);
+        bpBottom.setCenter(pbLoad);
 
         VBox.setMargin(bPaste, insets);
-        VBox.setMargin(tfAllRight, insets);
-        VBox.setMargin(bNext, insets);
+        VBox.setMargin(lvResults, insets);
         VBox.setMargin(bDelete, insets);
         VBox.setMargin(sDivider, insets);
 
         VBox.setVgrow(bPaste, Priority.ALWAYS);
+        VBox.setVgrow(lvResults, Priority.ALWAYS);
 
         MAIN_ROOT = new VBox();
         MAIN_ROOT.setAlignment(Pos.TOP_LEFT);
         MAIN_ROOT.setPadding(padding);
-        MAIN_ROOT.getChildren().addAll(bPaste, bpSearch, bpCopy, tfAllRight, bNext, bDelete, sDivider, bpEdit, bpBottom);
+        MAIN_ROOT.getChildren().addAll(bPaste, bpSearch, bpCopy, lvResults, bDelete, hbFile, sDivider, bpEdit, bpBottom);
 
         MAIN_SCENE = new Scene(MAIN_ROOT, WIDTH, HEIGHT);
 
         primaryStage.setResizable(true);
         primaryStage.setTitle("Words Transformer FX");
         primaryStage.setScene(MAIN_SCENE);
-        primaryStage.setX((SCREEN_WIDTH - WIDTH) / 2);
-        primaryStage.setY((SCREEN_HEIGHT - HEIGHT) / 2);
+        final Rectangle2D screenRectangle = Screen.getPrimary().getBounds();
+        primaryStage.setX((screenRectangle.getWidth() - WIDTH) / 2);
+        primaryStage.setY((screenRectangle.getHeight() - HEIGHT) / 2);
 
         MAIN_STAGE = primaryStage;
 
@@ -453,246 +958,33 @@ public class WordsTransformerFX extends Application {
         primaryStage.setAlwaysOnTop(true);
 
         addActions();
-        readData();
+        readData(Data.DEFAULT_FILE_NAME);
+        watchData();
     }
 
-    // -----Object Class-----
-    /**
-     * The data for Words Transformer FX.
-     */
-    private class Data {
-
-        // -----Object Constant-----
-        /**
-         * Data absolute path.
-         */
-        private final String dataPath;
-        /**
-         * Left data.
-         */
-        private final ArrayList<String> left = new ArrayList<>();
-        /**
-         * Right data.
-         */
-        private final ArrayList<String> right = new ArrayList<>();
-
-        // -----Object Variable-----
-        /**
-         * Whether left data were found.
-         */
-        private boolean findLeft;
-
-        // -----Constructor-----
-        /**
-         * Construct data instance.
-         *
-         * @param dataFilePath input the absolute data file path
-         */
-        public Data(final String dataFilePath) {
-            dataPath = dataFilePath;
-        }
-
-        public boolean findLeft() {
-            return findLeft;
-        }
-
-        public int count() {
-            final int size = left.size();
-            if (size != right.size()) {
-                showAlertDialog(AlertType.WARNING, "Hint", null, "Warning! Some data were broken!");
-            }
-            return size;
-        }
-
-        public String getAllRight(final int index) {
-            if (index >= count() || index < 0) {
-                return "";
-            }
-            return right.get(index);
-        }
-
-        public String getRight(final int index) {
-            if (index >= count() || index < 0) {
-                return "";
-            }
-            final String tmp = right.get(index);
-            final StringTokenizer stChange = new StringTokenizer(tmp, "-->");
-
-            final int tokenCount_dec = stChange.countTokens() - 1;
-
-            // Consume the tokenizer
-            for (int i = 0; i < tokenCount_dec; ++i) {
-                stChange.nextToken();
-            }
-
-            return stChange.nextToken().trim();
-        }
-
-        public String getLeft(final int index) {
-            if (index >= count() || index < 0) {
-                return "";
-            }
-            return left.get(index);
-        }
-
-        public String get(final int index) {
-            if (findLeft) {
-                return getRight(index);
-            } else {
-                return getLeft(index);
-            }
-        }
-
-        public int find(final String str) {
-            return findNext(str, -1);
-        }
-
-        public int findNext(final String str, final int index) {
-            int targetIndex;
-
-            //find left
-            findLeft = true;
-            if (index == -1) {
-                targetIndex = find(left, str, index, true);
-                if (targetIndex != -1) {
-                    return targetIndex;
-                }
-            }
-            targetIndex = find(left, str, index, false);
-            if (targetIndex != -1) {
-                return targetIndex;
-            }
-
-            //find right
-            findLeft = false;
-            if (index == -1) {
-                targetIndex = find(right, str, index, true);
-                if (targetIndex != -1) {
-                    return targetIndex;
-                }
-            }
-            targetIndex = find(right, str, index, false);
-
-            return targetIndex;
-        }
-
-        private int find(final ArrayList<String> al, final String str, final int index, final boolean strict) {
-            final int size = count();
-            int point = index + 1;
-            if (point >= 0 && point <= size) {
-                if (strict) {
-                    for (int i = 0; i < size; ++i) {
-                        final int targetIndex = point % size;
-                        final String tmp = al.get(targetIndex);
-                        if (tmp.equalsIgnoreCase(str)) {
-                            return targetIndex;
-                        }
-                        ++point;
-                    }
-                } else {
-                    final String strUpper = str.toUpperCase();
-                    for (int i = 0; i < size; ++i) {
-                        final int targetIndex = point % size;
-                        final String tmp = al.get(targetIndex).toUpperCase();
-                        if (tmp.contains(strUpper)) {
-                            return targetIndex;
-                        }
-                        ++point;
-                    }
-                }
-            }
-            return -1;
-        }
-
-        public void readData() {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(dataPath), "utf8"))) {
+    /**
+     * Write the changes in the journal into the database file before exiting.
+     */
+    @Override
+    public void stop() {
+        stopping = true;
+        // Compact the data as the last data operation, so that they are still only accessed by the data executor. The JavaFX Application Thread never waits for it.
+        dataExecutor.execute(() -> {
+            if (dataWatcher != null) {
                 try {
-                    while (br.ready()) {
-                        final String line = br.readLine().trim();
-                        if (line.equals("")) {
-                            continue;
-                        }
-                        final StringTokenizer stEqual = new StringTokenizer(line, "=");
-                        if (stEqual.countTokens() != 2) {
-                            throw new Exception();
-                        }
-                        final String leftString = stEqual.nextToken().trim();
-                        final int findSame = find(left, leftString, -1, true);
-                        if (findSame > -1) {
-                            right.set(findSame, right.get(findSame).concat(" --> ").concat(stEqual.nextToken().trim()));
-                        } else {
-                            left.add(leftString);
-                            right.add(stEqual.nextToken().trim());
-                        }
-                    }
-                } catch (final Exception e) {
-                    showAlertDialog(AlertType.WARNING, "Hint", "Cannot not read data correctly! The database has something wrong!", "Path: ".concat(dataPath));
-                }
-            } catch (final Exception e) {
-                showAlertDialog(AlertType.WARNING, "Hint", "Cannot not read data correctly! The database doesn't exist!", "Path: ".concat(dataPath));
-            }
-        }
-
-        public boolean add(final String leftString, final String rightString) {
-            if (rightString.contains("-->")) {
-                showAlertDialog(AlertType.WARNING, "Hint", null, "Your right string cannot contain '-->'!");
-                return false;
-            }
-            try {
-                final int index = find(left, leftString, -1, true);
-                if (index == -1) {
-                    left.add(leftString);
-                    right.add(rightString);
-                } else if (getRight(index).equals(rightString)) {
-                    showAlertDialog(AlertType.INFORMATION, "Hint", null, "The data already exists!");
-                } else {
-                    right.set(index, right.get(index).concat(" --> ").concat(rightString));
+                    dataWatcher.close();
+                } catch (final IOException ex) {
+                    // Nothing to do.
                 }
-            } catch (final Exception e) {
-                return false;
-            }
-            writeData();
-            return true;
-        }
-
-        public boolean delete(final int index) {
-            try {
-                left.remove(index);
-                right.remove(index);
-            } catch (final Exception e) {
-                return false;
             }
-            writeData();
-            return true;
-        }
-
-        public void writeData() {
-            try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dataPath), "utf8"))) {
-                final int leftSize = left.size();
-                if (leftSize > 0) {
-                    final int leftSize_dec = left.size() - 1;
-                    // When doing natural sorting, it also writes data to file.
-                    for (int i = 0; i < leftSize_dec; ++i) {
-                        for (int j = i + 1; j < leftSize; ++j) {
-                            if (left.get(i).toUpperCase().compareTo(left.get(j).toUpperCase()) > 0) {
-                                String tmp = left.get(i);
-                                left.set(i, left.get(j));
-                                left.set(j, tmp);
-
-                                tmp = right.get(i);
-                                right.set(i, right.get(j));
-                                right.set(j, tmp);
-                            }
-                        }
-                        bw.write(left.get(i).concat(" = ").concat(right.get(i)).concat("\n"));
-                    }
-
-                    bw.write(left.get(leftSize_dec).concat(" = ").concat(right.get(leftSize_dec)));
+            for (final DataException ex : dictionaries.compact()) {
+                System.err.println(ex.getMessage());
+                final String detail = ex.getDetail();
+                if (detail != null) {
+                    System.err.println(detail);
                 }
-                bw.flush();
-            } catch (final Exception e) {
-                showAlertDialog(AlertType.WARNING, "Hint", "Can't not write data correctly! The database file cannot be written, or some data's format are incorrect.", "Path: ".concat(dataPath));
             }
-        }
+        });
+        dataExecutor.shutdown();
     }
 }
@@ -0,0 +1,124 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link BinarySnapshot}.
+ *
+ * @author Magic Len
+ */
+public class BinarySnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static final List<Entry> ENTRIES = Arrays.asList(
+            new Entry("Aendan", "安登"),
+            new Entry("Fire Drake", "火龍戰士", "焰火龍"),
+            new Entry("ｆｕｌｌ", "全形"));
+
+    private File writeDataFile() throws IOException {
+        final Path file = directory.resolve("WordsData");
+        Files.write(file, "Aendan = 安登\n".getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static void assertSameEntries(final List<Entry> expected, final List<Entry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            final Entry e = expected.get(i);
+            final Entry a = actual.get(i);
+            assertTrue(e.sameAs(a), a.left());
+            assertEquals(e.folded, a.folded);
+            assertEquals(e.foldedRight, a.foldedRight);
+        }
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        final File dataFile = writeDataFile();
+        BinarySnapshot.write(dataFile, ENTRIES);
+        assertSameEntries(ENTRIES, BinarySnapshot.read(dataFile));
+    }
+
+    @Test
+    public void ignoresAMissingSnapshot() throws IOException {
+        assertNull(BinarySnapshot.read(writeDataFile()));
+    }
+
+    @Test
+    public void ignoresAnOutOfDateSnapshot() throws IOException {
+        final File dataFile = writeDataFile();
+        BinarySnapshot.write(dataFile, ENTRIES);
+        Files.write(dataFile.toPath(), "Aendan = 新安登\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(BinarySnapshot.read(dataFile));
+    }
+
+    @Test
+    public void ignoresABrokenSnapshot() throws IOException {
+        final File dataFile = writeDataFile();
+        BinarySnapshot.write(dataFile, ENTRIES);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile.getPath().concat(BinarySnapshot.EXTENSION), "rw")) {
+            // Flip a byte of a string, which is only found by the checksum.
+            file.seek(40);
+            final int b = file.read();
+            file.seek(40);
+            file.write(b ^ 0x01);
+        }
+        assertNull(BinarySnapshot.read(dataFile));
+    }
+
+    @Test
+    public void ignoresAnEditWhichKeepsTheSizeAndTheTime() throws IOException {
+        final File dataFile = writeDataFile();
+        BinarySnapshot.write(dataFile, ENTRIES);
+        final long lastModified = dataFile.lastModified();
+        Files.write(dataFile.toPath(), "Bendan = 安登\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(dataFile.setLastModified(lastModified));
+        assertNull(BinarySnapshot.read(dataFile));
+    }
+
+    @Test
+    public void ignoresAHugeCount() throws IOException {
+        final File dataFile = writeDataFile();
+        BinarySnapshot.write(dataFile, ENTRIES);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile.getPath().concat(BinarySnapshot.EXTENSION), "rw")) {
+            // The count of entries follows the magic number, the version, the size and the checksum of the database file.
+            file.seek(24);
+            file.writeInt(Integer.MAX_VALUE);
+            // The length of the first string.
+            file.writeInt(Integer.MAX_VALUE);
+        }
+        assertNull(BinarySnapshot.read(dataFile));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link DataFileReader}.
+ *
+ * @author Magic Len
+ */
+public class DataFileReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private File write(final String content) throws IOException {
+        final Path file = directory.resolve("WordsData");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    @Test
+    public void readsTrimmedTuplesAndSkipsBlankLines() throws IOException {
+        final File file = write("\uFEFFFire Drake = 火龍戰士 --> 焰火龍\r\n\r\n  Aendan=安登  \n\nDrake Claws == 爪擊");
+        try (DataFileReader reader = new DataFileReader(file)) {
+            assertTrue(reader.next());
+            assertEquals("Fire Drake", reader.left());
+            assertEquals("火龍戰士 --> 焰火龍", reader.right());
+            assertEquals(1, reader.lineNumber());
+            assertTrue(reader.next());
+            assertEquals("Aendan", reader.left());
+            assertEquals("安登", reader.right());
+            assertEquals(3, reader.lineNumber());
+            assertTrue(reader.next());
+            assertEquals("Drake Claws", reader.left());
+            assertEquals("爪擊", reader.right());
+            assertEquals(5, reader.lineNumber());
+            assertFalse(reader.next());
+            assertEquals(1.0, reader.progress(), 0.0);
+        }
+    }
+
+    @Test
+    public void rejectsTwoSeparators() throws IOException {
+        try (DataFileReader reader = new DataFileReader(write("Aendan = 安登\na = b = c\n"))) {
+            assertTrue(reader.next());
+            assertThrows(IOException.class, reader::next);
+            assertEquals(2, reader.lineNumber());
+        }
+    }
+
+    @Test
+    public void rejectsAnEmptySide() throws IOException {
+        try (DataFileReader reader = new DataFileReader(write("Aendan =\n"))) {
+            assertThrows(IOException.class, reader::next);
+        }
+        try (DataFileReader reader = new DataFileReader(write("= 安登\n"))) {
+            assertThrows(IOException.class, reader::next);
+        }
+        try (DataFileReader reader = new DataFileReader(write("Aendan\n"))) {
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+
+    @Test
+    public void readsAnEmptyFile() throws IOException {
+        try (DataFileReader reader = new DataFileReader(write(""))) {
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void releasesTheFileWhenClosed() throws IOException {
+        final File file = write("Aendan = 安登\nFire Drake = 火龍\n");
+        try (DataFileReader reader = new DataFileReader(file)) {
+            assertTrue(reader.next());
+        }
+        // The file can be replaced, like when data are written, and deleted.
+        final Path tmp = directory.resolve("WordsData.tmp");
+        Files.write(tmp, "Aendan = 艾恩丹\n".getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (DataFileReader reader = new DataFileReader(file)) {
+            assertTrue(reader.next());
+            assertEquals("艾恩丹", reader.right());
+        }
+        Files.delete(file.toPath());
+    }
+
+    @Test
+    public void readsTheGeneration() throws IOException {
+        try (DataFileReader reader = new DataFileReader(write("\uFEFF# generation 12\r\nAendan = 安登"))) {
+            assertEquals(12, reader.generation());
+            assertTrue(reader.next());
+            assertEquals("Aendan", reader.left());
+            assertEquals(2, reader.lineNumber());
+        }
+        try (DataFileReader reader = new DataFileReader(write("Aendan = 安登"))) {
+            assertEquals(0, reader.generation());
+        }
+        // It is not a tuple either.
+        try (DataFileReader reader = new DataFileReader(write("# generation x\nAendan = 安登"))) {
+            assertEquals(0, reader.generation());
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+}
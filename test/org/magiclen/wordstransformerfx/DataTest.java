@@ -0,0 +1,151 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link Data}.
+ *
+ * @author Magic Len
+ */
+public class DataTest {
+
+    @TempDir
+    Path directory;
+
+    private Data load(final String content) throws IOException {
+        final Path file = directory.resolve("WordsData");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        final Data data = new Data(file.toString());
+        assertTrue(data.readData().isEmpty());
+        return data;
+    }
+
+    private Data reload() {
+        final Data data = new Data(directory.resolve("WordsData").toString());
+        assertTrue(data.readData().isEmpty());
+        return data;
+    }
+
+    @Test
+    public void rejectsLineBreaks() throws IOException {
+        final Data data = load("Aendan = 安登\n");
+        assertThrows(DataException.class, () -> data.add("Fire\nDrake", "火龍"));
+        assertThrows(DataException.class, () -> data.add("Fire Drake", "火\r龍"));
+        assertThrows(DataException.class, () -> data.add("Fire Drake", "火龍\n焰火龍"));
+        assertEquals(1, data.count());
+        assertEquals(1, reload().count());
+    }
+
+    @Test
+    public void trimsAddedStrings() throws IOException, DataException {
+        final Data data = load("Aendan = 安登\n");
+        assertTrue(data.add("  Fire Drake ", " 火龍\t"));
+        assertEquals("火龍", data.getRight(data.indexOf("Fire Drake")));
+        // The journal and the compacted data file have the same strings as the memory.
+        final Data replayed = reload();
+        assertEquals("Fire Drake", replayed.getLeft(replayed.indexOf("fire drake")));
+        assertEquals("火龍", replayed.getRight(replayed.indexOf("Fire Drake")));
+        data.compact();
+        final Data compacted = reload();
+        assertEquals(2, compacted.count());
+        assertEquals("火龍", compacted.getRight(compacted.indexOf("Fire Drake")));
+    }
+
+    @Test
+    public void rewritesTheFileAfterItWasRead() throws IOException, DataException {
+        final Data data = load("Aendan = 安登\n");
+        // The file was mapped while it was read. It is replaced when it is compacted.
+        assertTrue(data.add("Fire Drake", "火龍"));
+        data.compact();
+        // An editor replaces it, too, and it is read again.
+        Files.write(directory.resolve("WordsData"), "Aendan = 艾恩丹\nFire Drake = 火龍\n".getBytes(StandardCharsets.UTF_8));
+        directory.resolve("WordsData").toFile().setLastModified(System.currentTimeMillis() + 2000);
+        assertTrue(data.reloadIfModified());
+        assertEquals("艾恩丹", data.getRight(data.indexOf("Aendan")));
+        assertTrue(data.add("Ice Drake", "冰龍"));
+        data.compact();
+        assertEquals(3, reload().count());
+    }
+
+    @Test
+    public void findsShortValuesInALargeDictionary() throws IOException, DataException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 120000; ++i) {
+            sb.append("Drake").append(i).append(" = 火龍").append(i).append('\n');
+        }
+        sb.append("Fire Drake = 火龍\nWarrior = 戰士\n");
+        final Data data = load(sb.toString());
+        // A rare bigram is matched as usual.
+        final SearchResult rare = data.search("戰士");
+        assertEquals(1, rare.count(SearchResult.Rank.RIGHT));
+        assertEquals("Warrior", rare.getLeft(0));
+        // A common bigram still finds the equal value.
+        final SearchResult common = data.search("火龍");
+        assertEquals(1, common.count(SearchResult.Rank.RIGHT));
+        assertEquals("Fire Drake", common.getLeft(0));
+        // The journal is not compacted yet, so the added tuple is found by the added postings.
+        assertTrue(data.add("Knight", "騎士"));
+        assertEquals("Knight", data.search("騎士").getLeft(0));
+    }
+
+    @Test
+    public void storesTheStringsCompactly() throws IOException, DataException {
+        final Path file = directory.resolve("WordsData");
+        Files.write(file, "Aendan = 安登\nFire Drake = 火龍戰士 --> 焰火龍\n".getBytes(StandardCharsets.UTF_8));
+        final Data data = new Data(file.toString(), true, true);
+        assertTrue(data.readData().isEmpty());
+        assertTrue(data.isCompactStrings());
+        assertEquals("焰火龍", data.getRight(data.indexOf("fire drake")));
+        assertTrue(data.add("Aendan", "艾恩丹"));
+        assertTrue(data.add("Knight", "騎士"));
+        assertEquals("Aendan", data.search("艾恩").getLeft(0));
+        assertEquals("Fire Drake", data.search("戰士").getLeft(0));
+        data.compact();
+        final Data compacted = reload();
+        assertEquals(3, compacted.count());
+        assertEquals("安登 --> 艾恩丹", compacted.getAllRight(compacted.indexOf("Aendan")));
+        assertEquals("騎士", compacted.getRight(compacted.indexOf("Knight")));
+    }
+
+    @Test
+    public void replaysTheJournalOnlyOnceAfterACrash() throws IOException, DataException {
+        final Data data = load("Aendan = 安登\n");
+        assertTrue(data.add("Fire Drake", "火龍戰士"));
+        assertTrue(data.add("Fire Drake", "焰火龍"));
+        // The data file is written, but the program stops before the journal is removed.
+        data.writeData();
+        assertTrue(directory.resolve("WordsData".concat(Journal.EXTENSION)).toFile().exists());
+        final Data restarted = reload();
+        assertEquals("火龍戰士 --> 焰火龍", restarted.getAllRight(restarted.indexOf("Fire Drake")));
+        // The changes after that are replayed.
+        assertTrue(restarted.add("Fire Drake", "火龍"));
+        final Data replayed = reload();
+        assertEquals("火龍戰士 --> 焰火龍 --> 火龍", replayed.getAllRight(replayed.indexOf("Fire Drake")));
+    }
+}
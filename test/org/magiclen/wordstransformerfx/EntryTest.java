@@ -0,0 +1,88 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link Entry}.
+ *
+ * @author Magic Len
+ */
+public class EntryTest {
+
+    @Test
+    public void matchesTheNewestRightString() {
+        final Entry entry = new Entry("Fire Drake", "火龍戰士", "焰火龍");
+        assertTrue(entry.currentContains("焰火"));
+        assertTrue(entry.currentContains("焰火龍"));
+        assertFalse(entry.currentContains("戰士"));
+        assertEquals(3, entry.foldedCurrentLength());
+        assertEquals(entry.foldedCurrent().length(), entry.foldedCurrentLength());
+    }
+
+    @Test
+    public void matchesTheOlderRightStrings() {
+        final Entry entry = new Entry("Fire Drake", "火龍戰士", "龍騎", "焰火龍");
+        assertTrue(entry.olderContains("戰士"));
+        assertTrue(entry.olderContains("龍騎"));
+        assertFalse(entry.olderContains("焰火"));
+        // "火龍" is in the oldest right string, even though it is in the newest one, too.
+        assertTrue(entry.olderContains("火龍"));
+        assertFalse(new Entry("Aendan", "安登").olderContains("安登"));
+    }
+
+    @Test
+    public void doesNotMatchAcrossRightStrings() {
+        final Entry entry = new Entry("Fire Drake", "火龍", "戰士");
+        assertFalse(entry.olderContains("龍\n戰"));
+        assertFalse(entry.currentContains("龍\n戰"));
+    }
+
+    @Test
+    public void keepsTheStringsWhenCompact() {
+        final Utf8Arena arena = new Utf8Arena();
+        final Entry[] entries = {
+            new Entry("Fire Drake", "火龍戰士", "焰火龍"),
+            new Entry("AENDAN", "安登"),
+            new Entry("ＦＩＲＥ", "ｆｉｒｅ", "火"),
+            new Entry("Knight", "騎士", "騎士")
+        };
+        for (final Entry entry : entries) {
+            final Entry compact = entry.compact(arena);
+            assertTrue(compact.isCompact());
+            assertTrue(compact.sameAs(entry));
+            assertEquals(entry.left(), compact.left());
+            assertEquals(entry.current(), compact.current());
+            assertEquals(entry.history(), compact.history());
+            assertEquals(entry.revisionCount(), compact.revisionCount());
+            assertEquals(entry.foldedRight, compact.foldedRight);
+            final Entry revised = compact.revise("新");
+            assertFalse(revised.isCompact());
+            assertEquals(entry.history().concat(" --> 新"), revised.history());
+        }
+        // Strings which are the same as their folded strings are not stored at all.
+        final long size = arena.size();
+        assertEquals("安登", new Entry("AENDAN", "安登").compact(arena).current());
+        assertEquals(size, arena.size());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of {@link Journal}.
+ *
+ * @author Magic Len
+ */
+public class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Replay a journal into a list of records like "+Fire Drake=焰火龍" and "-Aendan".
+     */
+    private static List<String> replay(final Journal journal) throws IOException {
+        return replay(journal, 0);
+    }
+
+    /**
+     * Replay a journal over a data file of a generation.
+     */
+    private static List<String> replay(final Journal journal, final long dataGeneration) throws IOException {
+        final ArrayList<String> records = new ArrayList<>();
+        journal.replay(dataGeneration, new Journal.Handler() {
+            @Override
+            public void add(final String left, final String right) {
+                records.add("+".concat(left).concat("=").concat(right));
+            }
+
+            @Override
+            public void delete(final String left) {
+                records.add("-".concat(left));
+            }
+        });
+        return records;
+    }
+
+    @Test
+    public void replaysRecordsInOrder() throws IOException {
+        final String dataPath = directory.resolve("WordsData").toString();
+        final Journal journal = new Journal(dataPath);
+        journal.appendAdd("Fire Drake", "火龍戰士");
+        journal.appendDelete("Aendan");
+        journal.appendAdd("Fire Drake", "焰火龍");
+        assertEquals(3, journal.size());
+
+        // Another instance reads the same journal, like the next start of the program.
+        final Journal reopened = new Journal(dataPath);
+        assertEquals(Arrays.asList("+Fire Drake=火龍戰士", "-Aendan", "+Fire Drake=焰火龍"), replay(reopened));
+        assertEquals(3, reopened.size());
+    }
+
+    @Test
+    public void clearRemovesTheFile() throws IOException {
+        final String dataPath = directory.resolve("WordsData").toString();
+        final Journal journal = new Journal(dataPath);
+        journal.appendAdd("Aendan", "安登");
+        journal.clear();
+        assertEquals(0, journal.size());
+        assertFalse(new File(dataPath.concat(Journal.EXTENSION)).exists());
+        assertEquals(0, replay(journal).size());
+    }
+
+    @Test
+    public void rejectsBrokenRecords() throws IOException {
+        final String dataPath = directory.resolve("WordsData").toString();
+        for (final String broken : Arrays.asList("+ Aendan\n", "* Aendan = 安登\n", "+Aendan = 安登\n")) {
+            Files.write(new File(dataPath.concat(Journal.EXTENSION)).toPath(), broken.getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> replay(new Journal(dataPath)), broken);
+        }
+    }
+
+    @Test
+    public void skipsRecordsIncludedInTheDataFile() throws IOException {
+        final String dataPath = directory.resolve("WordsData").toString();
+        final Journal journal = new Journal(dataPath);
+        replay(journal, 3);
+        journal.appendAdd("Fire Drake", "火龍戰士");
+        // The data file of the generation 4 was written, but the journal was not removed.
+        journal.include(4);
+        assertEquals(0, journal.size());
+        assertEquals(Arrays.asList("+Fire Drake=火龍戰士"), replay(new Journal(dataPath), 3));
+        assertEquals(0, replay(new Journal(dataPath), 4).size());
+        // The next record starts a new journal based on it.
+        journal.appendAdd("Fire Drake", "焰火龍");
+        final Journal reopened = new Journal(dataPath);
+        assertEquals(Arrays.asList("+Fire Drake=焰火龍"), replay(reopened, 4));
+        assertEquals(4, reopened.generation());
+    }
+}
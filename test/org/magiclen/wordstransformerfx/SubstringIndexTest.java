@@ -0,0 +1,131 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link SubstringIndex}.
+ *
+ * @author Magic Len
+ */
+public class SubstringIndexTest {
+
+    private static HashSet<Entry> candidates(final SubstringIndex index, final String folded) {
+        final SubstringIndex.Candidates candidates = index.candidates(folded);
+        final HashSet<Entry> set = new HashSet<>();
+        for (int i = 0; i < candidates.baseSize(); ++i) {
+            final Entry entry = candidates.baseEntry(i);
+            if (entry != null) {
+                set.add(entry);
+            }
+        }
+        set.addAll(candidates.added());
+        return set;
+    }
+
+    private static String randomString(final Random random) {
+        final char[] chars = new char[2 + random.nextInt(6)];
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = "ABCDE火龍戰士".charAt(random.nextInt(9));
+        }
+        return new String(chars);
+    }
+
+    @Test
+    public void answersNothingUntilBuilt() {
+        final SubstringIndex index = new SubstringIndex(entry -> entry.folded);
+        final Entry entry = new Entry("Fire Drake", "火龍");
+        index.add(entry);
+        assertFalse(index.isBuilt());
+        assertNull(index.candidates("FI"));
+        index.build(Arrays.asList(entry));
+        assertTrue(index.isBuilt());
+        assertTrue(candidates(index, "FI").contains(entry));
+        assertNull(index.candidates("F"));
+        index.clear();
+        assertFalse(index.isBuilt());
+    }
+
+    @Test
+    public void keepsBuiltCandidatesInOrder() {
+        final List<Entry> entries = Arrays.asList(new Entry("Aendan", "安登"), new Entry("Dandelion", "蒲公英"), new Entry("Mandan", "曼丹"));
+        final SubstringIndex index = new SubstringIndex(entry -> entry.folded);
+        index.build(entries);
+        final SubstringIndex.Candidates candidates = index.candidates("DAN");
+        assertEquals(3, candidates.baseSize());
+        for (int i = 0; i < entries.size(); ++i) {
+            assertTrue(entries.get(i) == candidates.baseEntry(i));
+        }
+    }
+
+    @Test
+    public void findsChangedEntries() {
+        final Random random = new Random(42);
+        final ArrayList<Entry> entries = new ArrayList<>();
+        final HashSet<String> lefts = new HashSet<>();
+        while (entries.size() < 2000) {
+            final String left = randomString(random);
+            if (lefts.add(left)) {
+                entries.add(new Entry(left, "x"));
+            }
+        }
+        entries.sort(Entry.ORDER);
+        final SubstringIndex index = new SubstringIndex(entry -> entry.folded);
+        index.build(entries);
+        // Remove built entries and added entries, and add new ones.
+        for (int i = 0; i < 1000; ++i) {
+            if (random.nextBoolean()) {
+                final Entry removed = entries.remove(random.nextInt(entries.size()));
+                index.remove(removed);
+                lefts.remove(removed.left());
+            } else {
+                final String left = randomString(random);
+                if (lefts.add(left)) {
+                    final Entry entry = new Entry(left, "x");
+                    entries.add(entry);
+                    index.add(entry);
+                }
+            }
+        }
+        for (int i = 0; i < 200; ++i) {
+            final String str = randomString(random);
+            final String query = str.substring(0, Math.min(str.length(), 2 + random.nextInt(2)));
+            final HashSet<Entry> found = candidates(index, query);
+            for (final Entry entry : entries) {
+                if (entry.folded.contains(query)) {
+                    assertTrue(found.remove(entry), entry.left());
+                }
+            }
+            // The rest are candidates which do not contain the query, but no removed entry is a candidate.
+            for (final Entry entry : found) {
+                assertTrue(entries.contains(entry), entry.left());
+            }
+        }
+    }
+}
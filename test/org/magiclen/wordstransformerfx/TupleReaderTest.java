@@ -0,0 +1,106 @@
+/*
+ *
+ * Copyright 2015-2016 magiclen.org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.magiclen.wordstransformerfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link TupleReader}.
+ *
+ * @author Magic Len
+ */
+public class TupleReaderTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Read all tuples of a file into a list of rows like "1:1:Fire Drake=火龍" or "2:3:!The row has no right string.".
+     */
+    private List<String> read(final String name, final String content) throws IOException {
+        final File file = directory.resolve(name).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        final ArrayList<String> rows = new ArrayList<>();
+        try (TupleReader reader = TupleReader.open(file, TupleFormat.of(file))) {
+            while (reader.next()) {
+                final String prefix = String.valueOf(reader.row).concat(":").concat(String.valueOf(reader.line)).concat(":");
+                rows.add(reader.problem != null ? prefix.concat("!").concat(reader.problem) : prefix.concat(reader.left).concat("=").concat(reader.right));
+            }
+        }
+        return rows;
+    }
+
+    private static String tmx(final String header, final String units) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tmx version=\"1.4\"><header ".concat(header).concat("/><body>\n").concat(units).concat("</body></tmx>\n");
+    }
+
+    @Test
+    public void readsQuotedCsvFields() throws IOException {
+        final List<String> rows = read("a.csv", "\uFEFFFire Drake,火龍\n\"Drake, the \"\"Red\"\"\",\"紅龍\"\n\"Aendan\"x,艾恩丹\nAlone\n");
+        assertEquals(Arrays.asList("1:1:Fire Drake=火龍", "2:2:Drake, the \"Red\"=紅龍", "3:3:!A quoted field is followed by other characters.", "4:4:!The row has no right string."), rows);
+    }
+
+    @Test
+    public void readsMultiLineCsvFields() throws IOException {
+        final List<String> rows = read("a.csv", "\"Fire\nDrake\",\"火龍\n焰火龍\"\n\nAendan,艾恩丹\n\"Open,火\n");
+        assertEquals(Arrays.asList("1:1:Fire\nDrake=火龍\n焰火龍", "2:5:Aendan=艾恩丹", "3:6:!A quoted field is not closed."), rows);
+    }
+
+    @Test
+    public void readsTsvWithoutQuotes() throws IOException {
+        final List<String> rows = read("a.tsv", "Fire Drake\t火龍\n\"Aendan\"\t艾恩丹, 愛恩丹\n");
+        assertEquals(Arrays.asList("1:1:Fire Drake=火龍", "2:2:\"Aendan\"=艾恩丹, 愛恩丹"), rows);
+    }
+
+    @Test
+    public void readsTmxWithSourceLanguage() throws IOException {
+        final List<String> rows = read("a.tmx", tmx("srclang=\"en\"", "<tu><tuv xml:lang=\"zh-TW\"><seg>火龍</seg></tuv><tuv xml:lang=\"EN\"><seg>Fire Drake</seg></tuv></tu>\n"));
+        assertEquals(1, rows.size());
+        assertEquals("Fire Drake=火龍", rows.get(0).substring(rows.get(0).indexOf(':', 2) + 1));
+    }
+
+    @Test
+    public void readsTmxWithoutSourceLanguage() throws IOException {
+        final File file = directory.resolve("a.tmx").toFile();
+        Files.write(file.toPath(), tmx("", "<tu><tuv xml:lang=\"en\"><seg>Fire Drake</seg></tuv><tuv xml:lang=\"EN\"><seg>Fire Dragon</seg></tuv><tuv xml:lang=\"zh-TW\"><seg>火龍</seg></tuv></tu>\n<tu><tuv xml:lang=\"en\"><seg>Aendan</seg></tuv></tu>\n").getBytes(StandardCharsets.UTF_8));
+        try (TupleReader reader = TupleReader.open(file, TupleFormat.TMX)) {
+            // The first segment is the left string, and the first segment in another language is the right string.
+            assertTrue(reader.next());
+            assertNull(reader.problem);
+            assertEquals("Fire Drake", reader.left);
+            assertEquals("火龍", reader.right);
+            assertTrue(reader.next());
+            assertEquals("The translation unit has no segment in another language.", reader.problem);
+            assertFalse(reader.next());
+        }
+    }
+}